@@ -16,13 +16,18 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A utility class to read Avro-encoded data into Java Map objects.
+ * <p>
+ * AvroReader is immutable and thread-safe: a single instance can be shared by any number of threads. Per-schema
+ * read plans are compiled on first use and cached in a concurrent map.
  */
 public class AvroReader {
 
@@ -49,10 +54,21 @@ public class AvroReader {
      *
      * The map's keys are the names of Avro logical types, and the values are the {@link LogicalTypeReader}s
      * that are used to read and interpret these types. This map is initialized with either the default logical type
-     * readers or a custom set provided via the constructor.
+     * readers or a custom set provided via the constructor. The map is copied on construction, and the readers in
+     * it must be thread-safe.
      */
     private final Map<String, LogicalTypeReader> logicalTypeReaders;
 
+    /**
+     * Compiled read plans for record schemas, keyed by schema. Plans are immutable, so lookups never block and
+     * a plan compiled by racing threads is equal to the one that wins.
+     * <p>
+     * Entries are never evicted, so the cache holds one plan per distinct record schema this reader has seen,
+     * including nested ones. Callers that generate schemas on the fly should use a new reader per schema
+     * instead of sharing one.
+     */
+    private final ConcurrentHashMap<Schema, RecordPlan> recordPlans = new ConcurrentHashMap<>();
+
     /**
      * Constructs a new {@link AvroReader} with the default logical type readers.
      * <p>
@@ -79,7 +95,7 @@ public class AvroReader {
      * type.
      */
     public AvroReader(Map<String, LogicalTypeReader> logicalTypeReaders) {
-        this.logicalTypeReaders = logicalTypeReaders;
+        this.logicalTypeReaders = Collections.unmodifiableMap(new HashMap<>(logicalTypeReaders));
     }
 
     /**
@@ -114,8 +130,9 @@ public class AvroReader {
 
         switch (schema.getType()) {
             case RECORD:
-                Map<String, Object> resultMap = new HashMap<>();
-                for (Schema.Field field : schema.getFields()) {
+                RecordPlan plan = getRecordPlan(schema);
+                Map<String, Object> resultMap = new HashMap<>(plan.capacity);
+                for (Schema.Field field : plan.fields) {
                     resultMap.put(field.name(), readBasedOnSchema(decoder, field.schema()));
                 }
                 return resultMap;
@@ -156,6 +173,20 @@ public class AvroReader {
         }
     }
 
+    /**
+     * Returns the compiled plan for a record schema, compiling and caching it on first use.
+     *
+     * @param schema The Avro record schema.
+     * @return The plan for the schema.
+     */
+    private RecordPlan getRecordPlan(Schema schema) {
+        RecordPlan plan = recordPlans.get(schema);
+        if (plan == null) {
+            plan = recordPlans.computeIfAbsent(schema, RecordPlan::new);
+        }
+        return plan;
+    }
+
     /**
      * Reads a primitive value from a BinaryDecoder based on a provided schema type.
      *
@@ -188,6 +219,20 @@ public class AvroReader {
         }
     }
 
+    /**
+     * An immutable read plan for a record schema. It holds the record's fields in read order and the initial
+     * capacity that lets the result map hold every field without rehashing.
+     */
+    private static final class RecordPlan {
+        private final Schema.Field[] fields;
+        private final int capacity;
+
+        RecordPlan(Schema schema) {
+            this.fields = schema.getFields().toArray(new Schema.Field[0]);
+            this.capacity = (int) (fields.length / 0.75f) + 1;
+        }
+    }
+
     /**
      * The {@link LogicalTypeReader} interface defines a contract for reading Avro logical types.
      * <p>
@@ -215,7 +260,14 @@ public class AvroReader {
 
     static {
         DEFAULT_LOGICAL_TYPE_READERS = Map.of("decimal", (decoder, schema) -> {
-            BigInteger unscaledValue = new BigInteger(decoder.readBytes(null).array());
+            byte[] bytes;
+            if (schema.getType() == Schema.Type.FIXED) {
+                bytes = new byte[schema.getFixedSize()];
+                decoder.readFixed(bytes);
+            } else {
+                bytes = decoder.readBytes(null).array();
+            }
+            BigInteger unscaledValue = new BigInteger(bytes);
             return new BigDecimal(unscaledValue, ((LogicalTypes.Decimal) schema.getLogicalType()).getScale());
         }, "uuid", (decoder, schema) -> {
             return UUID.fromString(decoder.readString().toString());
@@ -1,28 +1,76 @@
 package dev.twister.avro;
 
+import org.apache.avro.LogicalType;
 import org.apache.avro.LogicalTypes;
 import org.apache.avro.Schema;
 import org.apache.avro.SchemaBuilder;
 
 import java.math.BigDecimal;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.StreamSupport;
 
 /**
  * A utility class to infer Avro schema from Java objects.
+ * <p>
+ * Schemas inferred in one run share instances: within a single call, such as {@link #infer(Map, String)} or
+ * {@link #infer(Class)}, every primitive field uses the same primitive and nullable union schemas, and identical
+ * records, arrays and unions are built once. Separate calls build their own schemas, so results of different
+ * calls share nothing, except that {@link #infer(Class)} returns the same cached schema for the same class.
+ * Inferred schemas should still be treated as immutable; copy a schema before adding properties to it.
  */
 public class AvroSchemaInferrer {
 
+    /**
+     * The minimum size of a list for its elements to be inferred in parallel by
+     * {@link #inferParallel(Iterable, String)}. Smaller lists aren't worth the cost of splitting.
+     */
+    public static final int PARALLEL_LIST_THRESHOLD = 4096;
+
+    /**
+     * The precision of the decimal schema the default inferrers use for BigDecimal when there is no value to
+     * take the precision from, as when inferring a schema from a class.
+     */
+    public static final int DEFAULT_DECIMAL_PRECISION = 38;
+
+    /**
+     * The scale of the decimal schema the default inferrers use for BigDecimal when there is no value to take
+     * the scale from, as when inferring a schema from a class.
+     */
+    public static final int DEFAULT_DECIMAL_SCALE = 18;
+
+    /**
+     * {@code Class.isRecord()}, or null when running on a Java version without records.
+     */
+    private static final Method IS_RECORD = findMethod(Class.class, "isRecord");
+
+    /**
+     * {@code Class.getRecordComponents()}, or null when running on a Java version without records.
+     */
+    private static final Method GET_RECORD_COMPONENTS = findMethod(Class.class, "getRecordComponents");
+
     /**
      * A map storing LogicalTypeInferrer instances associated with specific classes. Each LogicalTypeInferrer
      * is responsible for inferring the Avro logical type for instances of its associated class.
@@ -42,6 +90,16 @@ public class AvroSchemaInferrer {
      */
     private final boolean mapAsRecord;
 
+    /**
+     * Schemas inferred from classes by {@link #infer(Class)}, computed once per class.
+     */
+    private final ClassValue<Schema> classSchemas = new ClassValue<>() {
+        @Override
+        protected Schema computeValue(Class<?> type) {
+            return inferClass(type);
+        }
+    };
+
     /**
      * Creates an AvroSchemaInferrer with the default behavior of treating maps as records.
      */
@@ -76,7 +134,337 @@ public class AvroSchemaInferrer {
      * @return The inferred Avro schema.
      */
     public Schema infer(Map<String, Object> object, String recordName) {
-        return getSchemaBasedOnObjectType(object, recordName, null);
+        return getSchemaBasedOnObjectType(object, recordName, null, new InferenceContext(false));
+    }
+
+    /**
+     * Infers an Avro record schema from a Java class, without needing an instance of it.
+     * <p>
+     * Records are described by their record components, and other classes by their public getters ({@code getX()}
+     * and, for booleans, {@code isX()}). Fields are sorted by name, like the fields inferred from a Map. Fields of
+     * primitive types are required, and all other fields are nullable. {@code List<T>} fields become arrays and
+     * {@code Map<String, T>} fields become maps, typed from their type arguments. Shorts become ints. Enums become
+     * Avro enums, other classes become nested records named after the class, and classes with a logical type
+     * inferrer use it. JDK classes other than records, such as {@code Character}, {@code BigInteger} or
+     * {@code Object}, have no mapping and are rejected instead of becoming empty records. Those
+     * inferrers are called with a null object, and the default decimal inferrer then uses a precision of
+     * {@value #DEFAULT_DECIMAL_PRECISION} and a scale of {@value #DEFAULT_DECIMAL_SCALE}.
+     * <p>
+     * The schema is derived once per class and cached, so repeated calls for the same class are cheap.
+     *
+     * @param type The class to infer the schema from.
+     * @return The inferred Avro record schema.
+     * @throws IllegalArgumentException If the class, or the type of one of its properties, is unsupported.
+     */
+    public Schema infer(Class<?> type) {
+        return classSchemas.get(type);
+    }
+
+    /**
+     * Infers a single Avro schema that fits every Java Map in the given sample, in one pass over the sample.
+     * The result is the same as merging the schema inferred for each map into the schema so far using
+     * {@link #merge(Schema, Schema)}. Records are merged field by field into an accumulator instead, so the
+     * record schema is built once at the end rather than once per map that changes it.
+     *
+     * @param objects The Java Maps to infer the schema from.
+     * @param recordName The name of the record.
+     * @return The inferred Avro schema.
+     * @throws IllegalArgumentException If the sample is empty or contains an unsupported type.
+     */
+    public Schema infer(Iterable<Map<String, Object>> objects, String recordName) {
+        InferenceContext context = new InferenceContext(false);
+        RecordAccumulator record = null;
+        Schema schema = null;
+        for (Map<String, Object> object : objects) {
+            Schema objectSchema = getSchemaBasedOnObjectType(object, recordName, null, context);
+            if (record != null) {
+                record.add(objectSchema, context);
+            } else if (schema != null) {
+                schema = merge(schema, objectSchema, context);
+            } else if (objectSchema.getType() == Schema.Type.RECORD) {
+                record = new RecordAccumulator(objectSchema);
+            } else {
+                schema = objectSchema;
+            }
+        }
+        if (record != null) {
+            return record.toSchema(context);
+        } else if (schema == null) {
+            throw new IllegalArgumentException("Cannot infer schema from an empty sample");
+        }
+        return schema;
+    }
+
+    /**
+     * Infers a single Avro schema that fits every Java Map in the given sample, using the common fork-join pool.
+     * <p>
+     * The sample is split through its {@link java.util.Spliterator}, a partial schema is inferred for each chunk,
+     * and the partial schemas are combined with {@link #merge(Schema, Schema)}. Because merging is associative and
+     * chunks are combined in encounter order, the result is the same as {@link #infer(Iterable, String)}. Lists
+     * with at least {@value #PARALLEL_LIST_THRESHOLD} elements are split across workers as well. Any custom
+     * logical type inferrers must be thread-safe.
+     *
+     * @param objects The Java Maps to infer the schema from.
+     * @param recordName The name of the record.
+     * @return The inferred Avro schema.
+     * @throws IllegalArgumentException If the sample is empty or contains an unsupported type.
+     */
+    public Schema inferParallel(Iterable<Map<String, Object>> objects, String recordName) {
+        InferenceContext context = new InferenceContext(true);
+        return StreamSupport.stream(objects.spliterator(), true)
+                .map(object -> getSchemaBasedOnObjectType(object, recordName, null, context))
+                .reduce((left, right) -> merge(left, right, context))
+                .orElseThrow(() -> new IllegalArgumentException("Cannot infer schema from an empty sample"));
+    }
+
+    /**
+     * Merges two schemas into one that can describe the values of both.
+     * <p>
+     * The merged schema is nullable if either input is. Numeric types are widened: int and long widen to long,
+     * int and float widen to float, and any other mix of numeric types widens to double. Decimals widen to fit
+     * the integer digits and scale of both. Records with the same name are merged field by field, keeping the
+     * left record's field order and appending fields only the right record has; fields missing from either side
+     * become nullable. Arrays and maps merge their element and value schemas, and enums with the same name merge
+     * their symbols. Types that can't be merged are combined into a union.
+     *
+     * @param left The first schema to merge.
+     * @param right The second schema to merge.
+     * @return A schema that describes values of both schemas.
+     */
+    public Schema merge(Schema left, Schema right) {
+        return merge(left, right, new InferenceContext(false));
+    }
+
+    /**
+     * Merges two schemas into one that can describe the values of both, sharing the primitive schemas of an
+     * inference run.
+     *
+     * @param left The first schema to merge.
+     * @param right The second schema to merge.
+     * @param context The state shared by one inference run.
+     * @return A schema that describes values of both schemas.
+     */
+    private Schema merge(Schema left, Schema right, InferenceContext context) {
+        if (left.equals(right)) {
+            return left;
+        }
+
+        List<Schema> branches = new ArrayList<>();
+        addBranch(branches, left, context);
+        addBranch(branches, right, context);
+        boolean nullable = isNullable(left) || isNullable(right);
+
+        if (branches.isEmpty()) {
+            return context.primitive(Schema.Type.NULL);
+        } else if (branches.size() == 1 && !nullable) {
+            return branches.get(0);
+        }
+        List<Schema> types = new ArrayList<>(branches.size() + 1);
+        if (nullable) {
+            types.add(context.primitive(Schema.Type.NULL));
+        }
+        types.addAll(branches);
+        return Schema.createUnion(types);
+    }
+
+    /**
+     * Adds the non-null branches of a schema to a list of union branches, merging each one into an existing
+     * branch where possible.
+     *
+     * @param branches The union branches collected so far.
+     * @param schema The schema whose branches should be added.
+     * @param context The state shared by one inference run.
+     */
+    private void addBranch(List<Schema> branches, Schema schema, InferenceContext context) {
+        if (schema.getType() == Schema.Type.UNION) {
+            for (Schema type : schema.getTypes()) {
+                addBranch(branches, type, context);
+            }
+        } else if (schema.getType() != Schema.Type.NULL) {
+            for (int i = 0; i < branches.size(); i++) {
+                Schema merged = mergeBranch(branches.get(i), schema, context);
+                if (merged != null) {
+                    branches.set(i, merged);
+                    return;
+                }
+            }
+            branches.add(schema);
+        }
+    }
+
+    /**
+     * Merges two non-null, non-union schemas into a single schema.
+     *
+     * @param left The first schema to merge.
+     * @param right The second schema to merge.
+     * @param context The state shared by one inference run.
+     * @return The merged schema, or null if the schemas can only be combined as separate union branches.
+     */
+    private Schema mergeBranch(Schema left, Schema right, InferenceContext context) {
+        if (left.equals(right)) {
+            return left;
+        }
+
+        Schema.Type leftType = left.getType();
+        Schema.Type rightType = right.getType();
+        boolean hasLogicalType = left.getLogicalType() != null || right.getLogicalType() != null;
+        if (!hasLogicalType && isNumeric(leftType) && isNumeric(rightType)) {
+            return context.primitive(widenNumeric(leftType, rightType));
+        }
+        if (leftType != rightType) {
+            return null;
+        }
+        if (hasLogicalType) {
+            return mergeLogicalTypes(left, right, context);
+        }
+
+        switch (leftType) {
+            case RECORD:
+                return left.getFullName().equals(right.getFullName()) ? mergeRecords(left, right, context) : null;
+            case ARRAY:
+                return Schema.createArray(merge(left.getElementType(), right.getElementType(), context));
+            case MAP:
+                return Schema.createMap(merge(left.getValueType(), right.getValueType(), context));
+            case ENUM:
+                if (!left.getFullName().equals(right.getFullName())) {
+                    return null;
+                }
+                Set<String> symbols = new LinkedHashSet<>(left.getEnumSymbols());
+                symbols.addAll(right.getEnumSymbols());
+                return Schema.createEnum(left.getName(), left.getDoc(), left.getNamespace(),
+                        new ArrayList<>(symbols));
+            default:
+                // Fixed schemas with different names or sizes stay separate branches.
+                return null;
+        }
+    }
+
+    /**
+     * Merges two schemas of the same type where at least one has a logical type. Decimals are widened, equal
+     * logical types are kept, and mismatched logical types fall back to the underlying primitive type.
+     *
+     * @param left The first schema to merge.
+     * @param right The second schema to merge.
+     * @param context The state shared by one inference run.
+     * @return The merged schema, or null if the schemas can only be combined as separate union branches.
+     */
+    private Schema mergeLogicalTypes(Schema left, Schema right, InferenceContext context) {
+        LogicalType leftLogicalType = left.getLogicalType();
+        LogicalType rightLogicalType = right.getLogicalType();
+        if (leftLogicalType instanceof LogicalTypes.Decimal && rightLogicalType instanceof LogicalTypes.Decimal) {
+            if (left.getType() != Schema.Type.BYTES) {
+                return null;
+            }
+            LogicalTypes.Decimal leftDecimal = (LogicalTypes.Decimal) leftLogicalType;
+            LogicalTypes.Decimal rightDecimal = (LogicalTypes.Decimal) rightLogicalType;
+            int scale = Math.max(leftDecimal.getScale(), rightDecimal.getScale());
+            int integerDigits = Math.max(leftDecimal.getPrecision() - leftDecimal.getScale(),
+                    rightDecimal.getPrecision() - rightDecimal.getScale());
+            return LogicalTypes.decimal(integerDigits + scale, scale).addToSchema(Schema.create(Schema.Type.BYTES));
+        }
+        if (leftLogicalType != null && rightLogicalType != null
+                && leftLogicalType.getName().equals(rightLogicalType.getName())) {
+            return left;
+        }
+        switch (left.getType()) {
+            case RECORD:
+            case ENUM:
+            case FIXED:
+            case ARRAY:
+            case MAP:
+                return null;
+            default:
+                return context.primitive(left.getType());
+        }
+    }
+
+    /**
+     * Merges two records with the same name field by field.
+     *
+     * @param left The first record schema to merge.
+     * @param right The second record schema to merge.
+     * @param context The state shared by one inference run.
+     * @return The merged record schema.
+     */
+    private Schema mergeRecords(Schema left, Schema right, InferenceContext context) {
+        List<Schema.Field> fields = new ArrayList<>();
+        for (Schema.Field leftField : left.getFields()) {
+            Schema.Field rightField = right.getField(leftField.name());
+            Schema fieldSchema = (rightField == null)
+                    ? nullableSchema(leftField.schema(), context)
+                    : merge(leftField.schema(), rightField.schema(), context);
+            fields.add(copyField(leftField, fieldSchema));
+        }
+        for (Schema.Field rightField : right.getFields()) {
+            if (left.getField(rightField.name()) == null) {
+                fields.add(copyField(rightField, nullableSchema(rightField.schema(), context)));
+            }
+        }
+        return Schema.createRecord(left.getName(), left.getDoc(), left.getNamespace(), left.isError(), fields);
+    }
+
+    /**
+     * Copies a field with a possibly different schema. The default value is only kept if the schema is unchanged.
+     *
+     * @param field The field to copy.
+     * @param schema The schema of the new field.
+     * @return A new field that can be added to a record.
+     */
+    private Schema.Field copyField(Schema.Field field, Schema schema) {
+        if (field.schema().equals(schema)) {
+            return new Schema.Field(field, schema);
+        }
+        return new Schema.Field(field.name(), schema, field.doc(), (Object) null);
+    }
+
+    /**
+     * Returns whether the schema is null or a union with a null branch.
+     *
+     * @param schema The schema to check.
+     * @return True if the schema accepts null values.
+     */
+    private static boolean isNullable(Schema schema) {
+        if (schema.getType() == Schema.Type.UNION) {
+            for (Schema type : schema.getTypes()) {
+                if (type.getType() == Schema.Type.NULL) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return schema.getType() == Schema.Type.NULL;
+    }
+
+    /**
+     * Returns whether the type is one of the numeric primitive types.
+     *
+     * @param type The type to check.
+     * @return True if the type is int, long, float or double.
+     */
+    private static boolean isNumeric(Schema.Type type) {
+        return type == Schema.Type.INT || type == Schema.Type.LONG
+                || type == Schema.Type.FLOAT || type == Schema.Type.DOUBLE;
+    }
+
+    /**
+     * Returns the narrowest numeric type that can hold values of both types.
+     *
+     * @param left The first numeric type.
+     * @param right The second numeric type.
+     * @return The widened numeric type.
+     */
+    private static Schema.Type widenNumeric(Schema.Type left, Schema.Type right) {
+        if (left == right) {
+            return left;
+        } else if (left == Schema.Type.DOUBLE || right == Schema.Type.DOUBLE) {
+            return Schema.Type.DOUBLE;
+        } else if (left == Schema.Type.INT) {
+            return right;
+        } else if (right == Schema.Type.INT) {
+            return left;
+        }
+        // A long and a float, neither of which can hold all values of the other.
+        return Schema.Type.DOUBLE;
     }
 
     /**
@@ -85,90 +473,103 @@ public class AvroSchemaInferrer {
      * @param value The object to infer the schema from.
      * @param fieldName The name of the field for the object.
      * @param parentName The name of the parent field, or null if there's no parent.
+     * @param context The state shared by one inference run.
      * @return The inferred Avro schema.
-     * @throws IllegalArgumentException If the object's type is unsupported or if the object is an empty array.
+     * @throws IllegalArgumentException If the object's type is unsupported.
      */
-    private Schema getSchemaBasedOnObjectType(Object value, String fieldName, String parentName) {
-        Schema schema;
-        String finalRecordName = (parentName != null) ? parentName + "_" + fieldName : fieldName;
+    private Schema getSchemaBasedOnObjectType(Object value, String fieldName, String parentName,
+                                              InferenceContext context) {
+        if (value == null) {
+            return context.primitive(Schema.Type.NULL);
+        }
 
-        LogicalTypeInferrer inferrer = value != null ? inferrers.get(value.getClass()) : null;
+        LogicalTypeInferrer inferrer = inferrers.get(value.getClass());
         if (inferrer != null) {
-            schema = inferrer.infer(value);
-        } else if (value == null) {
-            schema = SchemaBuilder.builder().nullType();
+            return context.intern(inferrer.infer(value));
         } else if (value instanceof Integer) {
-            schema = SchemaBuilder.builder().intType();
+            return context.primitive(Schema.Type.INT);
         } else if (value instanceof Long) {
-            schema = SchemaBuilder.builder().longType();
+            return context.primitive(Schema.Type.LONG);
         } else if (value instanceof Float) {
-            schema = SchemaBuilder.builder().floatType();
+            return context.primitive(Schema.Type.FLOAT);
         } else if (value instanceof Double) {
-            schema = SchemaBuilder.builder().doubleType();
+            return context.primitive(Schema.Type.DOUBLE);
         } else if (value instanceof Boolean) {
-            schema = SchemaBuilder.builder().booleanType();
+            return context.primitive(Schema.Type.BOOLEAN);
         } else if (value instanceof String) {
-            schema = SchemaBuilder.builder().stringType();
+            return context.primitive(Schema.Type.STRING);
         } else if (value instanceof Byte || value instanceof byte[] || value instanceof ByteBuffer) {
             // Byte, byte array, byte buffer
-            schema = SchemaBuilder.builder().bytesType();
-        } else if (value instanceof Map) {
-            // Recursive call for nested map
-            Map<String, Object> sortedMap = new TreeMap<>((Map<String, Object>) value);
+            return context.primitive(Schema.Type.BYTES);
+        }
 
+        String finalRecordName = (parentName != null) ? parentName + "_" + fieldName : fieldName;
+        if (value instanceof Map) {
+            // Recursive call for nested map
+            Map<String, Object> map = (Map<String, Object>) value;
             if (mapAsRecord) {
-                schema = handleMapAsRecord(sortedMap, finalRecordName);
+                return handleMapAsRecord(map, finalRecordName, context);
             } else {
-                schema = handleMapAsMap(sortedMap, finalRecordName);
+                return handleMapAsMap(map, finalRecordName, context);
             }
         } else if (value instanceof List) {
-            // Array type
+            // Array type, with items typed from every element. Empty lists get null items, which merge
+            // with the item type of any other list for the same field.
             List<?> list = (List<?>) value;
-            if (!list.isEmpty()) {
-                Object firstItem = list.get(0);
-                Schema elementType = getSchemaBasedOnObjectType(firstItem, fieldName, finalRecordName);
-                schema = SchemaBuilder.array().items(nullableSchema(elementType));
+            Schema elementType = context.primitive(Schema.Type.NULL);
+            if (context.parallel && list.size() >= PARALLEL_LIST_THRESHOLD) {
+                elementType = list.parallelStream()
+                        .map(item -> getSchemaBasedOnObjectType(item, fieldName, finalRecordName, context))
+                        .reduce(elementType, (left, right) -> merge(left, right, context));
             } else {
-                throw new IllegalArgumentException("Cannot infer schema for an empty array");
+                for (Object item : list) {
+                    elementType = merge(elementType,
+                            getSchemaBasedOnObjectType(item, fieldName, finalRecordName, context), context);
+                }
             }
-        } else {
-            throw new IllegalArgumentException("Unsupported type: " + value.getClass().getName());
+            return context.array(context.nullable(elementType));
         }
-
-        return schema;
+        throw new IllegalArgumentException("Unsupported type: " + value.getClass().getName());
     }
 
     /**
-     * Handles the inference of an Avro schema for a map treated as a record.
+     * Handles the inference of an Avro schema for a map treated as a record. The map's keys are sorted without
+     * copying the map, and a record with the same name and the same field schemas as one already inferred in
+     * this run is reused instead of being built again.
      *
-     * @param sortedMap The sorted map to infer the schema from.
+     * @param map The map to infer the schema from.
      * @param finalRecordName The final name of the record.
+     * @param context The state shared by one inference run.
      * @return The inferred Avro schema.
      */
-    private Schema handleMapAsRecord(Map<String, Object> sortedMap, String finalRecordName) {
-        SchemaBuilder.FieldAssembler<Schema> fields = SchemaBuilder.record(finalRecordName).fields();
+    private Schema handleMapAsRecord(Map<String, Object> map, String finalRecordName, InferenceContext context) {
+        String[] names = map.keySet().toArray(new String[0]);
+        Arrays.sort(names);
 
-        for (Map.Entry<String, Object> entry : sortedMap.entrySet()) {
-            Schema fieldSchema = getSchemaBasedOnObjectType(entry.getValue(), entry.getKey(), finalRecordName);
-            fields.name(entry.getKey()).type(nullableSchema(fieldSchema)).noDefault();
+        Schema[] fieldSchemas = new Schema[names.length];
+        for (int i = 0; i < names.length; i++) {
+            Schema fieldSchema = getSchemaBasedOnObjectType(map.get(names[i]), names[i], finalRecordName, context);
+            fieldSchemas[i] = context.nullable(fieldSchema);
         }
 
-        return fields.endRecord();
+        return context.record(new RecordKey(finalRecordName, names, fieldSchemas));
     }
 
     /**
      * Handles the inference of an Avro schema for a map treated as a map.
      *
-     * @param sortedMap The sorted map to infer the schema from.
+     * @param map The map to infer the schema from.
      * @param finalRecordName The final name of the record.
+     * @param context The state shared by one inference run.
      * @return The inferred Avro schema.
      */
-    private Schema handleMapAsMap(Map<String, Object> sortedMap, String finalRecordName) {
+    private Schema handleMapAsMap(Map<String, Object> map, String finalRecordName, InferenceContext context) {
         Set<Schema> fieldSchemas = new HashSet<>();
         Set<String> schemaTypes = new HashSet<>();
 
-        for (Map.Entry<String, Object> entry : sortedMap.entrySet()) {
-            Schema fieldSchema = getSchemaBasedOnObjectType(entry.getValue(), entry.getKey(), finalRecordName);
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            Schema fieldSchema = getSchemaBasedOnObjectType(entry.getValue(), entry.getKey(), finalRecordName,
+                    context);
 
             // Only add the schema if its type hasn't been added before
             if (schemaTypes.add(fieldSchema.getType().getName())) {
@@ -185,23 +586,712 @@ public class AvroSchemaInferrer {
     }
 
     /**
-     * Returns a nullable version of the given schema.
+     * Returns whether a value can be described by a schema inferred by this inferrer without changing it, that is
+     * whether merging the value's inferred schema into the schema would return the schema unchanged. The check
+     * walks the value and the schema together and allocates nothing for values built from primitives, maps and
+     * lists.
+     *
+     * @param value The value to check.
+     * @param schema The schema to check the value against.
+     * @return True if the value fits the schema.
+     */
+    private boolean fits(Object value, Schema schema) {
+        if (schema.getType() == Schema.Type.UNION) {
+            List<Schema> types = schema.getTypes();
+            for (int i = 0; i < types.size(); i++) {
+                if (fits(value, types.get(i))) {
+                    return true;
+                }
+            }
+            return false;
+        } else if (value == null) {
+            return schema.getType() == Schema.Type.NULL;
+        }
+
+        LogicalTypeInferrer inferrer = inferrers.get(value.getClass());
+        if (inferrer != null) {
+            if (value instanceof BigDecimal && schema.getType() == Schema.Type.BYTES
+                    && schema.getLogicalType() instanceof LogicalTypes.Decimal) {
+                BigDecimal decimal = (BigDecimal) value;
+                LogicalTypes.Decimal decimalType = (LogicalTypes.Decimal) schema.getLogicalType();
+                return decimal.scale() <= decimalType.getScale() && decimal.precision() - decimal.scale()
+                        <= decimalType.getPrecision() - decimalType.getScale();
+            }
+            // The schema may depend on the value, as for parameterized logical types, so the whole schema is compared.
+            return schema.equals(inferrer.infer(value));
+        } else if (schema.getLogicalType() != null) {
+            return false;
+        }
+
+        switch (schema.getType()) {
+            case INT:
+                return value instanceof Integer;
+            case LONG:
+                return value instanceof Long || value instanceof Integer;
+            case FLOAT:
+                return value instanceof Float || value instanceof Integer;
+            case DOUBLE:
+                return value instanceof Double || value instanceof Float || value instanceof Long
+                        || value instanceof Integer;
+            case BOOLEAN:
+                return value instanceof Boolean;
+            case STRING:
+                return value instanceof String;
+            case BYTES:
+                return value instanceof Byte || value instanceof byte[] || value instanceof ByteBuffer;
+            case RECORD:
+                return mapAsRecord && value instanceof Map && fitsRecord((Map<String, Object>) value, schema);
+            case MAP:
+                if (mapAsRecord || !(value instanceof Map)) {
+                    return false;
+                }
+                for (Object mapValue : ((Map<String, Object>) value).values()) {
+                    if (!fits(mapValue, schema.getValueType())) {
+                        return false;
+                    }
+                }
+                return true;
+            case ARRAY:
+                if (!(value instanceof List)) {
+                    return false;
+                }
+                for (Object item : (List<?>) value) {
+                    if (!fits(item, schema.getElementType())) {
+                        return false;
+                    }
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns whether a map fits a record schema: every key must be a field whose schema the value fits, and
+     * every field the map doesn't have must be nullable.
+     *
+     * @param map The map to check.
+     * @param schema The record schema to check the map against.
+     * @return True if the map fits the record.
+     */
+    private boolean fitsRecord(Map<String, Object> map, Schema schema) {
+        int matched = 0;
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            Schema.Field field = schema.getField(entry.getKey());
+            if (field == null || !fits(entry.getValue(), field.schema())) {
+                return false;
+            }
+            matched++;
+        }
+        if (matched < schema.getFields().size()) {
+            for (Schema.Field field : schema.getFields()) {
+                if (!isNullable(field.schema()) && !map.containsKey(field.name())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Infers the record schema for a class, rejecting classes that map to a non-record schema.
+     *
+     * @param type The class to infer the schema from.
+     * @return The inferred Avro record schema.
+     * @throws IllegalArgumentException If the class doesn't map to a record.
+     */
+    private Schema inferClass(Class<?> type) {
+        Schema schema = getSchemaBasedOnType(type, new HashMap<>(), new InferenceContext(false));
+        if (schema.getType() != Schema.Type.RECORD) {
+            throw new IllegalArgumentException("Cannot infer a record schema from: " + type.getName());
+        }
+        return schema;
+    }
+
+    /**
+     * Infers a non-nullable Avro schema for a Java type.
+     *
+     * @param type The Java type, which may be a parameterized List or Map.
+     * @param records The record schemas of the classes seen so far, which lets recursive classes refer to
+     *                their own schema.
+     * @param context The state shared by one inference run.
+     * @return The inferred Avro schema.
+     * @throws IllegalArgumentException If the type is unsupported.
+     */
+    private Schema getSchemaBasedOnType(Type type, Map<Class<?>, Schema> records, InferenceContext context) {
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) type;
+            Class<?> rawType = (Class<?>) parameterizedType.getRawType();
+            Type[] arguments = parameterizedType.getActualTypeArguments();
+            if (List.class.isAssignableFrom(rawType)) {
+                return Schema.createArray(nullableType(arguments[0], records, context));
+            } else if (Map.class.isAssignableFrom(rawType)) {
+                if (arguments[0] != String.class) {
+                    throw new IllegalArgumentException("Unsupported map key type: " + arguments[0].getTypeName());
+                }
+                return Schema.createMap(nullableType(arguments[1], records, context));
+            }
+            throw new IllegalArgumentException("Unsupported generic type: " + type.getTypeName());
+        } else if (!(type instanceof Class)) {
+            throw new IllegalArgumentException("Unsupported type: " + type.getTypeName());
+        }
+
+        Class<?> clazz = (Class<?>) type;
+        LogicalTypeInferrer inferrer = inferrers.get(clazz);
+        if (inferrer != null) {
+            return inferrer.infer(null);
+        } else if (clazz == int.class || clazz == Integer.class || clazz == short.class || clazz == Short.class) {
+            return context.primitive(Schema.Type.INT);
+        } else if (clazz == long.class || clazz == Long.class) {
+            return context.primitive(Schema.Type.LONG);
+        } else if (clazz == float.class || clazz == Float.class) {
+            return context.primitive(Schema.Type.FLOAT);
+        } else if (clazz == double.class || clazz == Double.class) {
+            return context.primitive(Schema.Type.DOUBLE);
+        } else if (clazz == boolean.class || clazz == Boolean.class) {
+            return context.primitive(Schema.Type.BOOLEAN);
+        } else if (clazz == String.class) {
+            return context.primitive(Schema.Type.STRING);
+        } else if (clazz == byte.class || clazz == Byte.class || clazz == byte[].class
+                || ByteBuffer.class.isAssignableFrom(clazz)) {
+            return context.primitive(Schema.Type.BYTES);
+        } else if (clazz.isEnum()) {
+            List<String> symbols = new ArrayList<>();
+            for (Object constant : clazz.getEnumConstants()) {
+                symbols.add(((Enum<?>) constant).name());
+            }
+            return Schema.createEnum(nameOf(clazz), null, namespaceOf(clazz), symbols);
+        } else if (clazz.isPrimitive() || clazz.isArray() || clazz.isInterface()
+                || List.class.isAssignableFrom(clazz) || Map.class.isAssignableFrom(clazz)
+                || (clazz.getName().startsWith("java.") && !isRecord(clazz))) {
+            throw new IllegalArgumentException("Unsupported type: " + clazz.getName());
+        }
+
+        Schema record = records.get(clazz);
+        if (record == null) {
+            record = Schema.createRecord(nameOf(clazz), null, namespaceOf(clazz), false);
+            records.put(clazz, record);
+            List<Schema.Field> fields = new ArrayList<>();
+            for (Map.Entry<String, Type> property : getProperties(clazz).entrySet()) {
+                Schema fieldSchema = nullableType(property.getValue(), records, context);
+                fields.add(new Schema.Field(property.getKey(), fieldSchema, null, (Object) null));
+            }
+            record.setFields(fields);
+        }
+        return record;
+    }
+
+    /**
+     * Infers the schema for a Java type, made nullable unless the type is a Java primitive.
+     *
+     * @param type The Java type.
+     * @param records The record schemas of the classes seen so far.
+     * @param context The state shared by one inference run.
+     * @return The inferred Avro schema.
+     */
+    private Schema nullableType(Type type, Map<Class<?>, Schema> records, InferenceContext context) {
+        Schema schema = getSchemaBasedOnType(type, records, context);
+        return (type instanceof Class && ((Class<?>) type).isPrimitive())
+                ? schema
+                : nullableSchema(schema, context);
+    }
+
+    /**
+     * Returns the properties of a class, sorted by name, along with their generic types. Records contribute
+     * their record components and other classes their public getters.
+     *
+     * @param clazz The class to get the properties of.
+     * @return The properties of the class, sorted by name.
+     */
+    private static SortedMap<String, Type> getProperties(Class<?> clazz) {
+        SortedMap<String, Type> properties = new TreeMap<>();
+        if (isRecord(clazz)) {
+            try {
+                for (Object component : (Object[]) GET_RECORD_COMPONENTS.invoke(clazz)) {
+                    Method getName = component.getClass().getMethod("getName");
+                    Method getGenericType = component.getClass().getMethod("getGenericType");
+                    properties.put((String) getName.invoke(component), (Type) getGenericType.invoke(component));
+                }
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Cannot read record components of: " + clazz.getName(), e);
+            }
+            return properties;
+        }
+
+        for (Method method : clazz.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 0 || method.isBridge()
+                    || method.getDeclaringClass() == Object.class || method.getReturnType() == void.class) {
+                continue;
+            }
+            String name = method.getName();
+            if (name.startsWith("get") && name.length() > 3) {
+                properties.put(decapitalize(name.substring(3)), method.getGenericReturnType());
+            } else if (name.startsWith("is") && name.length() > 2
+                    && (method.getReturnType() == boolean.class || method.getReturnType() == Boolean.class)) {
+                properties.put(decapitalize(name.substring(2)), method.getGenericReturnType());
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Returns whether a class is a Java record, which is never the case on Java versions without records.
+     *
+     * @param clazz The class to check.
+     * @return Whether the class is a record.
+     * @throws IllegalArgumentException If the check can't be made.
+     */
+    private static boolean isRecord(Class<?> clazz) {
+        if (IS_RECORD == null) {
+            return false;
+        }
+        try {
+            return (Boolean) IS_RECORD.invoke(clazz);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot check whether " + clazz.getName() + " is a record", e);
+        }
+    }
+
+    /**
+     * Turns the part of a getter name after "get" or "is" into a property name, following the JavaBeans rule
+     * that names starting with two capitals, such as "URL", are kept as is.
+     *
+     * @param name The part of the getter name after its prefix.
+     * @return The property name.
+     */
+    private static String decapitalize(String name) {
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(0)) && Character.isUpperCase(name.charAt(1))) {
+            return name;
+        }
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * Returns the Avro name for a class, which is its binary name without the package, with the '$' separating
+     * nested class names replaced by '_'. Unlike the simple name, this keeps nested classes with the same simple
+     * name in different enclosing classes apart.
+     *
+     * @param clazz The class to get the name of.
+     * @return The name of the class.
+     */
+    private static String nameOf(Class<?> clazz) {
+        String packageName = clazz.getPackageName();
+        String name = packageName.isEmpty() ? clazz.getName() : clazz.getName().substring(packageName.length() + 1);
+        return name.replace('$', '_');
+    }
+
+    /**
+     * Returns the Avro namespace for a class, which is its package name, or null for the default package.
+     *
+     * @param clazz The class to get the namespace of.
+     * @return The namespace of the class.
+     */
+    private static String namespaceOf(Class<?> clazz) {
+        String packageName = clazz.getPackageName();
+        return packageName.isEmpty() ? null : packageName;
+    }
+
+    /**
+     * Looks up a public method by name, returning null if it doesn't exist on this Java version.
+     *
+     * @param clazz The class to look the method up on.
+     * @param name The name of the method, which must take no parameters.
+     * @return The method, or null if it doesn't exist.
+     */
+    private static Method findMethod(Class<?> clazz, String name) {
+        try {
+            return clazz.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a nullable version of the given schema. Unions get a null branch added in front if they don't
+     * already have one, and the run's primitive schemas return the run's shared nullable union.
      *
      * @param schema The schema to make nullable.
+     * @param context The state shared by one inference run.
      * @return The nullable schema.
      */
-    private Schema nullableSchema(Schema schema) {
-        if (schema.getType() != Schema.Type.NULL) {
-            return SchemaBuilder.unionOf().nullType().and().type(schema).endUnion();
+    private static Schema nullableSchema(Schema schema, InferenceContext context) {
+        if (isNullable(schema)) {
+            return schema;
+        }
+        Schema interned = context.nullablePrimitives.get(schema.getType());
+        if (interned != null && interned.getTypes().get(1) == schema) {
+            return interned;
+        }
+        List<Schema> types;
+        if (schema.getType() == Schema.Type.UNION) {
+            types = new ArrayList<>(schema.getTypes().size() + 1);
+            types.add(context.primitive(Schema.Type.NULL));
+            types.addAll(schema.getTypes());
         } else {
+            types = List.of(context.primitive(Schema.Type.NULL), schema);
+        }
+        return Schema.createUnion(types);
+    }
+
+    /**
+     * The state shared by one inference run, which may span many records. It interns the schemas built during
+     * the run so that structurally identical schemas are built once and shared. Sharing also lets merges of
+     * identical schemas finish on an identity check. In a parallel run the state is shared between workers.
+     * <p>
+     * Schemas are mutable, so nothing is shared between runs: a property added to one run's result can't show
+     * up in another's.
+     */
+    private final class InferenceContext {
+        private final boolean parallel;
+        private final Map<Schema.Type, Schema> primitives = new EnumMap<>(Schema.Type.class);
+        private final Map<Schema.Type, Schema> nullablePrimitives = new EnumMap<>(Schema.Type.class);
+        private final Map<RecordKey, Schema> records;
+        private final Map<Schema, Schema> nullables;
+        private final Map<Schema, Schema> arrays;
+        private final Map<Schema, Schema> interned;
+
+        InferenceContext(boolean parallel) {
+            this.parallel = parallel;
+            this.records = parallel ? new ConcurrentHashMap<>() : new HashMap<>();
+            this.nullables = parallel ? new ConcurrentHashMap<>() : new HashMap<>();
+            this.arrays = parallel ? new ConcurrentHashMap<>() : new HashMap<>();
+            this.interned = parallel ? new ConcurrentHashMap<>() : new HashMap<>();
+            // Built up front, so workers of a parallel run can read them without locking.
+            for (Schema.Type type : List.of(Schema.Type.NULL, Schema.Type.BOOLEAN, Schema.Type.INT,
+                    Schema.Type.LONG, Schema.Type.FLOAT, Schema.Type.DOUBLE, Schema.Type.STRING, Schema.Type.BYTES)) {
+                primitives.put(type, Schema.create(type));
+            }
+            for (Schema primitive : primitives.values()) {
+                if (primitive.getType() != Schema.Type.NULL) {
+                    nullablePrimitives.put(primitive.getType(),
+                            Schema.createUnion(primitives.get(Schema.Type.NULL), primitive));
+                }
+            }
+        }
+
+        /**
+         * Returns this run's instance of a primitive schema.
+         *
+         * @param type The primitive type.
+         * @return The primitive schema.
+         */
+        Schema primitive(Schema.Type type) {
+            return primitives.get(type);
+        }
+
+        /**
+         * Returns the record with the given name and fields, building it only if this run hasn't yet.
+         *
+         * @param key The record name and its field names and schemas.
+         * @return The record schema.
+         */
+        Schema record(RecordKey key) {
+            Schema record = records.get(key);
+            if (record == null) {
+                record = records.computeIfAbsent(key, RecordKey::toSchema);
+            }
+            return record;
+        }
+
+        /**
+         * Returns the nullable version of a schema, sharing it with earlier calls for an equal schema.
+         *
+         * @param schema The schema to make nullable.
+         * @return The nullable schema.
+         */
+        Schema nullable(Schema schema) {
+            if (isNullable(schema) || primitives.get(schema.getType()) == schema) {
+                return nullableSchema(schema, this);
+            }
+            return nullables.computeIfAbsent(schema, key -> nullableSchema(key, this));
+        }
+
+        /**
+         * Returns an array schema with the given items, sharing it with earlier calls for equal items.
+         *
+         * @param items The schema of the array items.
+         * @return The array schema.
+         */
+        Schema array(Schema items) {
+            return arrays.computeIfAbsent(items, Schema::createArray);
+        }
+
+        /**
+         * Returns a schema equal to the given one, preferring an instance seen earlier in this run.
+         *
+         * @param schema The schema to intern.
+         * @return The interned schema.
+         */
+        Schema intern(Schema schema) {
+            Schema existing = interned.putIfAbsent(schema, schema);
+            return existing != null ? existing : schema;
+        }
+    }
+
+    /**
+     * Merges records with the same name field by field, like {@link #mergeRecords(Schema, Schema, InferenceContext)}
+     * applied to each record in turn, but keeping the merged field schemas in a mutable map and building the
+     * record schema only when asked for it.
+     */
+    private final class RecordAccumulator {
+        private final Schema first;
+        private final Map<String, FieldAccumulator> fields = new LinkedHashMap<>();
+        private int count;
+
+        RecordAccumulator(Schema first) {
+            this.first = first;
+            for (Schema.Field field : first.getFields()) {
+                fields.put(field.name(), new FieldAccumulator(field));
+            }
+            count = 1;
+        }
+
+        /**
+         * Merges another record into the fields accumulated so far. Fields the record shares with earlier ones
+         * are merged, unless their schemas are the same instance, and new fields are appended.
+         *
+         * @param record The record schema to merge.
+         * @param context The state shared by one inference run.
+         */
+        void add(Schema record, InferenceContext context) {
+            count++;
+            for (Schema.Field field : record.getFields()) {
+                FieldAccumulator accumulated = fields.get(field.name());
+                if (accumulated == null) {
+                    fields.put(field.name(), new FieldAccumulator(field));
+                } else {
+                    accumulated.present++;
+                    if (accumulated.schema != field.schema()) {
+                        accumulated.schema = merge(accumulated.schema, field.schema(), context);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Builds the merged record schema. Fields that some records didn't have are nullable. If every record
+         * had the first record's fields with the same schemas, the first record is returned as is.
+         *
+         * @param context The state shared by one inference run.
+         * @return The merged record schema.
+         */
+        Schema toSchema(InferenceContext context) {
+            List<Schema.Field> result = new ArrayList<>(fields.size());
+            boolean unchanged = fields.size() == first.getFields().size();
+            for (FieldAccumulator accumulated : fields.values()) {
+                Schema schema = accumulated.present < count
+                        ? nullableSchema(accumulated.schema, context)
+                        : accumulated.schema;
+                unchanged &= schema == accumulated.field.schema();
+                result.add(copyField(accumulated.field, schema));
+            }
+            if (unchanged) {
+                return first;
+            }
+            return Schema.createRecord(first.getName(), first.getDoc(), first.getNamespace(), first.isError(),
+                    result);
+        }
+    }
+
+    /**
+     * One field of a {@link RecordAccumulator}: the field as first seen, its merged schema so far, and the number
+     * of records that had it.
+     */
+    private static final class FieldAccumulator {
+        private final Schema.Field field;
+        private Schema schema;
+        private int present;
+
+        FieldAccumulator(Schema.Field field) {
+            this.field = field;
+            this.schema = field.schema();
+            this.present = 1;
+        }
+    }
+
+    /**
+     * Identifies a record inferred from a map: its name, its sorted field names and the schemas of its fields.
+     * Field schemas are compared by identity, which is exact for the interned schemas built in one run and
+     * cheap compared to a structural comparison.
+     */
+    private static final class RecordKey {
+        private final String name;
+        private final String[] fieldNames;
+        private final Schema[] fieldSchemas;
+        private final int hash;
+
+        RecordKey(String name, String[] fieldNames, Schema[] fieldSchemas) {
+            this.name = name;
+            this.fieldNames = fieldNames;
+            this.fieldSchemas = fieldSchemas;
+            int result = name.hashCode() * 31 + Arrays.hashCode(fieldNames);
+            for (Schema fieldSchema : fieldSchemas) {
+                result = result * 31 + System.identityHashCode(fieldSchema);
+            }
+            this.hash = result;
+        }
+
+        /**
+         * Builds the record schema described by this key.
+         *
+         * @return The record schema.
+         */
+        Schema toSchema() {
+            List<Schema.Field> fields = new ArrayList<>(fieldNames.length);
+            for (int i = 0; i < fieldNames.length; i++) {
+                fields.add(new Schema.Field(fieldNames[i], fieldSchemas[i], null, (Object) null));
+            }
+            return Schema.createRecord(name, null, null, false, fields);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof RecordKey)) {
+                return false;
+            }
+            RecordKey other = (RecordKey) o;
+            if (hash != other.hash || !name.equals(other.name) || !Arrays.equals(fieldNames, other.fieldNames)) {
+                return false;
+            }
+            for (int i = 0; i < fieldSchemas.length; i++) {
+                if (fieldSchemas[i] != other.fieldSchemas[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Tracks the schema of a stream of Java Maps as it evolves. Each map is first checked against the current
+     * schema with a walk that allocates nothing, and only a map that adds a field, needs a wider type or
+     * otherwise doesn't fit has its schema inferred and merged into the current one with
+     * {@link AvroSchemaInferrer#merge(Schema, Schema)}. Every change produces a new schema version and is
+     * reported to the tracker's listener.
+     * <p>
+     * SchemaTracker is thread-safe. Maps that fit are checked without locking, and changes are applied one at a
+     * time, so versions increase by one and listeners see them in order.
+     */
+    public static class SchemaTracker {
+        private final AvroSchemaInferrer inferrer;
+        private final String recordName;
+        private final SchemaChangeListener listener;
+        private volatile Schema schema;
+        private volatile int version;
+
+        /**
+         * Creates a tracker with no schema yet and no listener.
+         *
+         * @param inferrer The inferrer used to infer and merge schemas.
+         * @param recordName The name of the tracked record.
+         */
+        public SchemaTracker(AvroSchemaInferrer inferrer, String recordName) {
+            this(inferrer, recordName, null);
+        }
+
+        /**
+         * Creates a tracker with no schema yet.
+         *
+         * @param inferrer The inferrer used to infer and merge schemas.
+         * @param recordName The name of the tracked record.
+         * @param listener The listener told about each new schema version, or null for none.
+         */
+        public SchemaTracker(AvroSchemaInferrer inferrer, String recordName, SchemaChangeListener listener) {
+            this.inferrer = inferrer;
+            this.recordName = recordName;
+            this.listener = listener;
+        }
+
+        /**
+         * Returns whether a map fits the current schema, so that observing it wouldn't change the schema.
+         *
+         * @param object The map to check.
+         * @return True if the map fits the current schema, false if it doesn't or there is no schema yet.
+         */
+        public boolean fits(Map<String, Object> object) {
+            Schema current = schema;
+            return current != null && inferrer.fits(object, current);
+        }
+
+        /**
+         * Observes a map, evolving the schema if the map doesn't fit it.
+         *
+         * @param object The map to observe.
+         * @return True if the schema changed.
+         * @throws IllegalArgumentException If the map contains an unsupported type.
+         */
+        public boolean observe(Map<String, Object> object) {
+            if (fits(object)) {
+                return false;
+            }
+            synchronized (this) {
+                Schema current = schema;
+                if (current != null && inferrer.fits(object, current)) {
+                    return false;
+                }
+                Schema inferred = inferrer.infer(object, recordName);
+                Schema evolved = (current == null) ? inferred : inferrer.merge(current, inferred);
+                if (evolved.equals(current)) {
+                    return false;
+                }
+                schema = evolved;
+                version = version + 1;
+                if (listener != null) {
+                    listener.onSchemaChange(evolved, version);
+                }
+                return true;
+            }
+        }
+
+        /**
+         * Returns the current schema.
+         *
+         * @return The current schema, or null if no map has been observed yet.
+         */
+        public Schema getSchema() {
             return schema;
         }
+
+        /**
+         * Returns the current schema version, which starts at 0 before any map is observed and increases by one
+         * with every change.
+         *
+         * @return The current schema version.
+         */
+        public int getVersion() {
+            return version;
+        }
+    }
+
+    /**
+     * Listens for the schema changes of a {@link SchemaTracker}.
+     */
+    public interface SchemaChangeListener {
+
+        /**
+         * Called when the tracked schema changes. Calls are made one at a time, in version order, by the thread
+         * that observed the change.
+         *
+         * @param schema The new schema.
+         * @param version The version of the new schema.
+         */
+        void onSchemaChange(Schema schema, int version);
     }
 
     public static Map<Class<?>, LogicalTypeInferrer<?>> mapOfDefaultInferrers(TimeUnit timePrecision) {
         return Map.of(
                 BigDecimal.class, (LogicalTypeInferrer<BigDecimal>) value ->
-                        LogicalTypes.decimal(value.precision(), value.scale())
+                        (value == null
+                                ? LogicalTypes.decimal(DEFAULT_DECIMAL_PRECISION, DEFAULT_DECIMAL_SCALE)
+                                : LogicalTypes.decimal(value.precision(), value.scale()))
                                 .addToSchema(Schema.create(Schema.Type.BYTES)),
                 UUID.class, (LogicalTypeInferrer<UUID>) value ->
                         LogicalTypes.uuid().addToSchema(Schema.create(Schema.Type.STRING)),
@@ -240,7 +1330,8 @@ public class AvroSchemaInferrer {
         /**
          * Infers an Avro schema from the provided object.
          *
-         * @param object The object to infer the schema from.
+         * @param object The object to infer the schema from, or null when the schema is being inferred from a
+         *               class rather than an instance.
          * @return The inferred Avro schema.
          */
         Schema infer(T object);
@@ -1,11 +1,25 @@
 package dev.twister.avro;
 
+import org.apache.avro.Conversion;
+import org.apache.avro.Conversions;
+import org.apache.avro.LogicalType;
 import org.apache.avro.LogicalTypes;
 import org.apache.avro.Schema;
+import org.apache.avro.data.TimeConversions;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericFixed;
 import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.specific.AvroGenerated;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificRecord;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
@@ -18,12 +32,15 @@ import java.util.AbstractList;
 import java.util.AbstractMap;
 import java.util.AbstractSet;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * This class provides functionality to wrap Avro IndexedRecord objects
@@ -33,14 +50,69 @@ public class AvroWrapper {
 
     public static final Map<String, LogicalTypeConverter> DEFAULT_LOGICAL_TYPE_CONVERTERS;
 
+    /**
+     * Generic data with Avro's standard logical type conversions, used to convert values put into a
+     * {@link MutableFacade} back into Avro's representation.
+     */
+    private static final GenericData GENERIC_DATA = new GenericData();
+
+    /**
+     * The field getters of generated SpecificRecord classes, by field position, looked up once per class. A
+     * position is null where the class has no getter for the field, and the record's get(int) is used instead.
+     * Classes that weren't generated by Avro have no getters, since theirs may not return what get(int) does.
+     */
+    private static final ClassValue<Function<Object, Object>[]> SPECIFIC_ACCESSORS = new ClassValue<>() {
+        @Override
+        protected Function<Object, Object>[] computeValue(Class<?> type) {
+            return findSpecificAccessors(type);
+        }
+    };
+
+    /**
+     * Getter names that generated classes already use for their own methods, so field getters with these names
+     * are generated with a "$" suffix.
+     */
+    private static final Set<String> RESERVED_GETTERS = Set.of("getClass", "getSchema", "getClassSchema",
+            "getSpecificData", "getConversion", "getEncoder", "getDecoder");
+
+    /**
+     * Marks a memoized slot whose value hasn't been converted yet, since null is a valid converted value.
+     */
+    private static final Object UNCONVERTED = new Object();
+
     private final Map<String, LogicalTypeConverter> logicalTypeConverters;
 
+    /**
+     * Whether facades remember the values they convert.
+     */
+    private final boolean memoize;
+
+    /**
+     * Branch lookup tables for the unions that aren't a null and one other type, compiled on first use.
+     */
+    private final ConcurrentHashMap<Schema, UnionDispatch> unionDispatches = new ConcurrentHashMap<>();
+
     public AvroWrapper() {
         this(DEFAULT_LOGICAL_TYPE_CONVERTERS);
     }
 
     public AvroWrapper(Map<String, LogicalTypeConverter> logicalTypeConverters) {
+        this(logicalTypeConverters, false);
+    }
+
+    /**
+     * Creates a wrapper with the given logical type converters, optionally memoizing converted values.
+     * <p>
+     * A memoizing wrapper converts each field, element and map value at most once per facade and returns the
+     * same object on every later read, so nested facades keep their identity. Memoizing facades assume the
+     * wrapped data doesn't change after it is wrapped, and aren't meant to be read by several threads at once.
+     *
+     * @param logicalTypeConverters the converters for Avro logical types, keyed by logical type name
+     * @param memoize whether facades should remember the values they convert
+     */
+    public AvroWrapper(Map<String, LogicalTypeConverter> logicalTypeConverters, boolean memoize) {
         this.logicalTypeConverters = logicalTypeConverters;
+        this.memoize = memoize;
     }
 
     /**
@@ -53,6 +125,349 @@ public class AvroWrapper {
         return new Facade(record);
     }
 
+    /**
+     * Wraps the given IndexedRecord into a Map that can be changed without copying the record. See
+     * {@link MutableFacade}.
+     *
+     * @param record the IndexedRecord to be wrapped
+     * @return a mutable Map representing the IndexedRecord
+     */
+    public MutableFacade wrapMutable(IndexedRecord record) {
+        return new MutableFacade(record);
+    }
+
+    /**
+     * Looks up the getters a generated SpecificRecord class has for its schema's fields. Generated getters are
+     * named "get" followed by the field name in camel case, so "user_id" is read with getUserId(). Each getter is
+     * bound into a Function with LambdaMetafactory, so calls through it can be inlined like a direct call.
+     *
+     * @param type the SpecificRecord class
+     * @return the getters by field position, with null where no getter was found
+     */
+    private static Function<Object, Object>[] findSpecificAccessors(Class<?> type) {
+        @SuppressWarnings("unchecked")
+        Function<Object, Object>[] none = new Function[0];
+        if (!type.isAnnotationPresent(AvroGenerated.class)) {
+            return none;
+        }
+        Schema schema;
+        try {
+            schema = SpecificData.get().getSchema(type);
+        } catch (RuntimeException e) {
+            return none;
+        }
+        if (schema.getType() != Schema.Type.RECORD) {
+            return none;
+        }
+        List<Schema.Field> fields = schema.getFields();
+        @SuppressWarnings("unchecked")
+        Function<Object, Object>[] accessors = new Function[fields.size()];
+        for (Schema.Field field : fields) {
+            Method getter = findGetter(type, schema, field);
+            if (getter != null) {
+                accessors[field.pos()] = createAccessor(type, getter);
+            }
+        }
+        return accessors;
+    }
+
+    /**
+     * Binds a getter into a Function that calls it on the record it is given.
+     *
+     * @param type the SpecificRecord class
+     * @param getter the getter
+     * @return the Function, or null if the getter can't be accessed
+     */
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> createAccessor(Class<?> type, Method getter) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            MethodHandle handle = lookup.unreflect(getter);
+            CallSite site = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class), handle,
+                    MethodType.methodType(getter.getReturnType(), type).wrap());
+            return (Function<Object, Object>) site.getTarget().invoke();
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            // Leave the accessor null, so the field is read with get(int).
+            return null;
+        }
+    }
+
+    /**
+     * Finds the generated getter of a field. The code generator appends "$" to getters that would clash with
+     * methods every generated class has, such as getSchema(), or whose field name is a Java keyword. When two
+     * fields' names differ only in the case of their first letter, it appends "$0" to the getter of the one
+     * starting in lower case and "$1" to the other.
+     *
+     * @param type the SpecificRecord class
+     * @param schema the record schema
+     * @param field the field
+     * @return the getter, or null if the class has none
+     */
+    private static Method findGetter(Class<?> type, Schema schema, Schema.Field field) {
+        String name = getterName(field.name());
+        String fieldName = field.name();
+        char first = fieldName.charAt(0);
+        String conflictingName = (Character.isLowerCase(first) ? Character.toUpperCase(first)
+                : Character.toLowerCase(first)) + fieldName.substring(1);
+        List<String> candidates;
+        if (schema.getField(conflictingName) != null) {
+            candidates = List.of(name + (Character.isLowerCase(first) ? "$0" : "$1"));
+        } else if (RESERVED_GETTERS.contains(name)) {
+            candidates = List.of(name + "$");
+        } else {
+            candidates = List.of(name + "$", name);
+        }
+        for (String candidate : candidates) {
+            try {
+                Method getter = type.getMethod(candidate);
+                if (getter.getReturnType() != void.class && !Modifier.isStatic(getter.getModifiers())) {
+                    return getter;
+                }
+            } catch (NoSuchMethodException e) {
+                // Try the next candidate.
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the name Avro's code generator gives the getter of a field, before any suffix: "get" followed by
+     * the field name with its first letter and every letter after an underscore capitalized, and the underscores
+     * removed.
+     *
+     * @param fieldName the field name
+     * @return the getter name
+     */
+    private static String getterName(String fieldName) {
+        StringBuilder name = new StringBuilder("get");
+        boolean capitalize = true;
+        for (int i = 0; i < fieldName.length(); i++) {
+            char c = fieldName.charAt(i);
+            if (c == '_') {
+                capitalize = true;
+            } else if (capitalize) {
+                name.append(Character.toUpperCase(c));
+                capitalize = false;
+            } else {
+                name.append(c);
+            }
+        }
+        return name.toString();
+    }
+
+    /**
+     * Returns the record a Map created by an AvroWrapper is a view of, so that writers can encode the record
+     * directly.
+     *
+     * @param map the Map to unwrap
+     * @return the wrapped record, or null if the Map isn't a record facade
+     */
+    static IndexedRecord getWrappedRecord(Map<?, ?> map) {
+        if (map instanceof AvroWrapper.Facade) {
+            return ((AvroWrapper.Facade) map).record;
+        } else if (map instanceof MutableFacade) {
+            return ((MutableFacade) map).facade.record;
+        }
+        return null;
+    }
+
+    /**
+     * Converts a Java value, as returned by a facade or as put into a {@link MutableFacade}, back into the
+     * representation Avro's generic data uses for the given schema. Facades are unwrapped to the data they view,
+     * logical types are converted with Avro's standard conversions, and other Maps and Lists are converted
+     * element by element.
+     *
+     * @param schema the Avro schema of the value
+     * @param value the value to convert
+     * @return the value in Avro's generic representation
+     * @throws IllegalArgumentException if the value can't be represented with the schema
+     */
+    private Object toAvro(Schema schema, Object value) {
+        if (value == null) {
+            return null;
+        }
+        LogicalType logicalType = schema.getLogicalType();
+        if (logicalType != null) {
+            Conversion<?> conversion = GENERIC_DATA.getConversionFor(logicalType);
+            if (conversion != null && conversion.getConvertedType().isInstance(value)) {
+                return Conversions.convertToRawType(value, schema, logicalType, (Conversion<Object>) conversion);
+            }
+        }
+
+        switch (schema.getType()) {
+            case RECORD:
+                if (value instanceof MutableFacade) {
+                    return ((MutableFacade) value).toIndexedRecord();
+                } else if (value instanceof Facade) {
+                    return ((Facade) value).record;
+                } else if (value instanceof IndexedRecord) {
+                    return value;
+                }
+                Map<String, Object> map = (Map<String, Object>) value;
+                GenericData.Record record = new GenericData.Record(schema);
+                for (Schema.Field field : schema.getFields()) {
+                    record.put(field.pos(), toAvro(field.schema(), map.get(field.name())));
+                }
+                return record;
+            case ENUM:
+                return new GenericData.EnumSymbol(schema, value.toString());
+            case UNION:
+                return toAvro(resolveJavaUnion(schema, value), value);
+            case FIXED:
+                if (value instanceof GenericFixed) {
+                    return value;
+                }
+                ByteBuffer fixedBuffer = ((ByteBuffer) value).duplicate();
+                byte[] fixedBytes = new byte[fixedBuffer.remaining()];
+                fixedBuffer.get(fixedBytes);
+                return new GenericData.Fixed(schema, fixedBytes);
+            case ARRAY:
+                if (value instanceof FacadeList) {
+                    return ((FacadeList) value).list;
+                }
+                List<?> list = (List<?>) value;
+                GenericData.Array<Object> array = new GenericData.Array<>(list.size(), schema);
+                for (Object element : list) {
+                    array.add(toAvro(schema.getElementType(), element));
+                }
+                return array;
+            case MAP:
+                if (value instanceof FacadeMap) {
+                    return ((FacadeMap) value).map;
+                }
+                Map<String, Object> avroMap = new HashMap<>();
+                for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+                    avroMap.put(entry.getKey(), toAvro(schema.getValueType(), entry.getValue()));
+                }
+                return avroMap;
+            case BYTES:
+                return value instanceof byte[] ? ByteBuffer.wrap((byte[]) value) : value;
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Picks the union branch for a non-null Java value, matching the value's Java type against the types
+     * {@link #coerceType(Schema, Object)} returns for each branch. Unions of null and one other type are resolved
+     * directly. Otherwise a branch the value's type maps to exactly wins over one it can only be converted to, such
+     * as a String for an enum branch, a ByteBuffer for a fixed branch or a Map for a map branch, and earlier
+     * branches win ties.
+     *
+     * @param union the union schema
+     * @param value the Java value
+     * @return the branch schema
+     * @throws IllegalArgumentException if no branch can hold the value
+     */
+    private Schema resolveJavaUnion(Schema union, Object value) {
+        List<Schema> types = union.getTypes();
+        if (types.size() == 2) {
+            if (types.get(0).getType() == Schema.Type.NULL) {
+                return types.get(1);
+            } else if (types.get(1).getType() == Schema.Type.NULL) {
+                return types.get(0);
+            }
+        }
+        if (value instanceof Facade) {
+            return ((Facade) value).record.getSchema();
+        } else if (value instanceof MutableFacade) {
+            return ((MutableFacade) value).facade.record.getSchema();
+        }
+        Schema convertible = null;
+        for (Schema branch : types) {
+            if (isJavaType(branch, value)) {
+                return branch;
+            } else if (convertible == null && isConvertibleJavaType(branch, value)) {
+                convertible = branch;
+            }
+        }
+        if (convertible == null) {
+            throw new IllegalArgumentException("No branch of " + union + " matches " + value.getClass().getName());
+        }
+        return convertible;
+    }
+
+    /**
+     * Returns whether a non-null value has the Java type a facade returns for the given schema, or the type of
+     * Avro's own representation of it.
+     *
+     * @param schema the schema of a union branch
+     * @param value the Java value
+     * @return true if the value belongs to the branch
+     */
+    private static boolean isJavaType(Schema schema, Object value) {
+        LogicalType logicalType = schema.getLogicalType();
+        if (logicalType != null) {
+            Conversion<?> conversion = GENERIC_DATA.getConversionFor(logicalType);
+            if (conversion != null && conversion.getConvertedType().isInstance(value)) {
+                return true;
+            }
+        }
+        switch (schema.getType()) {
+            case RECORD:
+                if (value instanceof IndexedRecord) {
+                    return ((IndexedRecord) value).getSchema().getFullName().equals(schema.getFullName());
+                }
+                // A plain Map is a record first, and only a map if the union has no record branch.
+                return value instanceof Map && !(value instanceof FacadeMap);
+            case ENUM:
+                return (value instanceof GenericData.EnumSymbol || value instanceof Enum)
+                        && schema.hasEnumSymbol(value.toString());
+            case FIXED:
+                return value instanceof GenericFixed
+                        && ((GenericFixed) value).getSchema().getFullName().equals(schema.getFullName());
+            case ARRAY:
+                return value instanceof List;
+            case MAP:
+                return value instanceof FacadeMap;
+            case BOOLEAN:
+                return value instanceof Boolean;
+            case INT:
+                return value instanceof Integer;
+            case LONG:
+                return value instanceof Long;
+            case FLOAT:
+                return value instanceof Float;
+            case DOUBLE:
+                return value instanceof Double;
+            case STRING:
+                return value instanceof CharSequence;
+            case BYTES:
+                return value instanceof ByteBuffer || value instanceof byte[];
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns whether a non-null value, though not of a branch's own Java type, can be converted to it. Facades
+     * return enum symbols as Strings and fixed values as ByteBuffers, so these are matched by symbol and size.
+     *
+     * @param schema the schema of a union branch
+     * @param value the Java value
+     * @return true if the value can be converted to the branch
+     */
+    private static boolean isConvertibleJavaType(Schema schema, Object value) {
+        switch (schema.getType()) {
+            case RECORD:
+                return value instanceof IndexedRecord;
+            case ENUM:
+                return value instanceof CharSequence && schema.hasEnumSymbol(value.toString());
+            case FIXED:
+                if (value instanceof ByteBuffer) {
+                    return ((ByteBuffer) value).remaining() == schema.getFixedSize();
+                }
+                return value instanceof byte[] && ((byte[]) value).length == schema.getFixedSize();
+            case MAP:
+                return value instanceof Map;
+            default:
+                return false;
+        }
+    }
+
     /**
      * This method coerces the value into the correct Java type based on the Avro schema.
      * It supports Avro primitives, as well as complex types like records (which it wraps
@@ -66,7 +481,7 @@ public class AvroWrapper {
         if (schema.getLogicalType() != null) {
             LogicalTypeConverter converter = logicalTypeConverters.get(schema.getLogicalType().getName());
             if (converter != null) {
-                return converter.convert(value);
+                return converter.convert(value, schema);
             }
         }
 
@@ -76,9 +491,9 @@ public class AvroWrapper {
             case ENUM:
                 return value.toString();
             case UNION:
-                return coerceType(schema.getTypes().get(0), value);
+                return coerceType(resolveUnion(schema, value), value);
             case FIXED:
-                return ByteBuffer.wrap(((GenericFixed) value).bytes());
+                return ByteBuffer.wrap(((GenericFixed) value).bytes()).asReadOnlyBuffer();
             case ARRAY:
                 return new FacadeList(schema.getElementType(), (List<?>) value);
             case MAP:
@@ -92,9 +507,9 @@ public class AvroWrapper {
                 return value;
             case BYTES:
                 if (value instanceof ByteBuffer) {
-                    return value;
+                    return ((ByteBuffer) value).asReadOnlyBuffer();
                 } else if (value instanceof byte[]) {
-                    return ByteBuffer.wrap((byte[]) value);
+                    return ByteBuffer.wrap((byte[]) value).asReadOnlyBuffer();
                 } else {
                     throw new IllegalArgumentException("Unsupported type for BYTES: " + value.getClass());
                 }
@@ -105,6 +520,83 @@ public class AvroWrapper {
         }
     }
 
+    /**
+     * Picks the branch of a union that a value belongs to. Unions of null and one other type are resolved
+     * directly. Other unions are resolved with {@link GenericData#resolveUnion(Schema, Object)}, and the result
+     * is remembered per value class in a table compiled for the union, except for classes whose branch depends
+     * on the value's schema name.
+     *
+     * @param union the union schema
+     * @param value the value to find the branch of
+     * @return the branch schema
+     */
+    private Schema resolveUnion(Schema union, Object value) {
+        List<Schema> types = union.getTypes();
+        if (types.size() == 2) {
+            Schema first = types.get(0);
+            Schema second = types.get(1);
+            if (first.getType() == Schema.Type.NULL) {
+                return value == null ? first : second;
+            } else if (second.getType() == Schema.Type.NULL) {
+                return value == null ? second : first;
+            }
+        }
+        if (value == null) {
+            return types.get(GenericData.get().resolveUnion(union, null));
+        }
+        UnionDispatch dispatch = unionDispatches.get(union);
+        if (dispatch == null) {
+            dispatch = unionDispatches.computeIfAbsent(union, UnionDispatch::new);
+        }
+        return dispatch.resolve(value);
+    }
+
+    /**
+     * A class to branch table for one union schema, filled in as values of new classes are seen.
+     */
+    private static final class UnionDispatch {
+        private final Schema union;
+        private final ConcurrentHashMap<Class<?>, Schema> branches = new ConcurrentHashMap<>();
+
+        UnionDispatch(Schema union) {
+            this.union = union;
+        }
+
+        /**
+         * Returns the branch of the union that a non-null value belongs to.
+         *
+         * @param value the value
+         * @return the branch schema
+         */
+        Schema resolve(Object value) {
+            Schema branch = branches.get(value.getClass());
+            if (branch == null) {
+                branch = union.getTypes().get(GenericData.get().resolveUnion(union, value));
+                if (!isAmbiguous(branch.getType())) {
+                    branches.put(value.getClass(), branch);
+                }
+            }
+            return branch;
+        }
+
+        /**
+         * Returns whether the union has several branches of a type, which only happens for named types. Values
+         * of such a type are resolved by schema name, so their class alone doesn't determine the branch.
+         *
+         * @param type the type of a branch
+         * @return true if the union has more than one branch of that type
+         */
+        private boolean isAmbiguous(Schema.Type type) {
+            int count = 0;
+            for (Schema branch : union.getTypes()) {
+                if (branch.getType() == type) {
+                    count++;
+                }
+            }
+            return count > 1;
+        }
+    }
+
     /**
      * Facade is a private class that provides a Map view of a given IndexedRecord.
      * This facilitates easier manipulation of the IndexedRecord's data.
@@ -115,8 +607,77 @@ public class AvroWrapper {
 
         private final IndexedRecord record;
 
+        /**
+         * The getters of the record's generated class by field position, or null for generic records.
+         */
+        private final Function<Object, Object>[] accessors;
+
+        /**
+         * The converted field values by field position, allocated on first read when memoizing.
+         */
+        private Object[] values;
+
         Facade(IndexedRecord record) {
             this.record = record;
+            this.accessors = (record instanceof SpecificRecord) ? SPECIFIC_ACCESSORS.get(record.getClass()) : null;
+        }
+
+        /**
+         * Reads the unconverted value of a field, through the generated getter for specific records.
+         *
+         * @param field the field to read
+         * @return the field value as stored in the record
+         */
+        private Object getRawValue(Schema.Field field) {
+            if (accessors != null && field.pos() < accessors.length && accessors[field.pos()] != null) {
+                return accessors[field.pos()].apply(record);
+            }
+            return record.get(field.pos());
+        }
+
+        /**
+         * Returns the converted value of a field, converting it only once when memoizing.
+         *
+         * @param field the field to read
+         * @return the converted value
+         */
+        private Object getValue(Schema.Field field) {
+            if (!memoize) {
+                return coerceType(field.schema(), getRawValue(field));
+            }
+            if (values == null) {
+                values = new Object[record.getSchema().getFields().size()];
+                Arrays.fill(values, UNCONVERTED);
+            }
+            Object value = values[field.pos()];
+            if (value == UNCONVERTED) {
+                value = coerceType(field.schema(), getRawValue(field));
+                values[field.pos()] = value;
+            }
+            return value;
+        }
+
+        /**
+         * Looks the field up by name in the record's schema and coerces only that field, rather than scanning
+         * the entries.
+         */
+        @Override
+        public Object get(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            Schema.Field field = record.getSchema().getField((String) key);
+            return field == null ? null : getValue(field);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && record.getSchema().getField((String) key) != null;
+        }
+
+        @Override
+        public int size() {
+            return record.getSchema().getFields().size();
         }
 
         @Override
@@ -136,8 +697,7 @@ public class AvroWrapper {
                         @Override
                         public Entry<String, Object> next() {
                             Schema.Field field = iterator.next();
-                            return new SimpleImmutableEntry<>(field.name(), coerceType(field.schema(),
-                                    record.get(field.pos())));
+                            return new SimpleImmutableEntry<>(field.name(), getValue(field));
                         }
                     };
                 }
@@ -150,6 +710,197 @@ public class AvroWrapper {
         }
     }
 
+    /**
+     * A Map view of an IndexedRecord that can be changed without copying the record. Changed fields are kept as
+     * sparse overrides, so the cost of a change is proportional to the number of changed fields, and fields that
+     * aren't changed are still read lazily from the record, which itself is never modified.
+     * <p>
+     * Only the record's fields can be set, and fields can't be removed. Use {@link #toIndexedRecord()} to get the
+     * result as a record, or pass the facade to {@link AvroWriter} to serialize it. Values put into the facade
+     * must be the Java types the wrapper returns, or Avro's generic representations of the field's schema.
+     */
+    public final class MutableFacade extends AbstractMap<String, Object> {
+
+        private final Facade facade;
+
+        /**
+         * The positions of the overridden fields, in the order they were first set.
+         */
+        private int[] overridePositions = new int[0];
+
+        /**
+         * The values of the overridden fields, parallel to {@link #overridePositions}.
+         */
+        private Object[] overrideValues = new Object[0];
+
+        private int overrideCount;
+
+        MutableFacade(IndexedRecord record) {
+            this.facade = new Facade(record);
+        }
+
+        /**
+         * Returns the wrapped record, without any of the changes made through this facade.
+         *
+         * @return the wrapped record
+         */
+        public IndexedRecord getRecord() {
+            return facade.record;
+        }
+
+        /**
+         * Returns whether the field at a position has been set through this facade.
+         *
+         * @param position the field position
+         * @return true if the field has been set
+         */
+        public boolean isOverridden(int position) {
+            return indexOf(position) >= 0;
+        }
+
+        /**
+         * Returns the Avro representation of the field at a position: the converted override if the field has
+         * been set, or the record's own value otherwise.
+         *
+         * @param position the field position
+         * @return the field value in Avro's generic representation
+         */
+        Object getAvroValue(int position) {
+            int index = indexOf(position);
+            if (index < 0) {
+                return facade.record.get(position);
+            }
+            Schema.Field field = facade.record.getSchema().getFields().get(position);
+            return toAvro(field.schema(), overrideValues[index]);
+        }
+
+        /**
+         * Builds a new record with the wrapped record's values and the changes made through this facade. Fields
+         * that weren't changed share their values with the wrapped record.
+         *
+         * @return a new record
+         * @throws IllegalArgumentException if a changed value can't be represented with its field's schema
+         */
+        public IndexedRecord toIndexedRecord() {
+            GenericData.Record result = new GenericData.Record(facade.record.getSchema());
+            int fieldCount = facade.record.getSchema().getFields().size();
+            for (int position = 0; position < fieldCount; position++) {
+                result.put(position, facade.record.get(position));
+            }
+            for (int i = 0; i < overrideCount; i++) {
+                int position = overridePositions[i];
+                Schema.Field field = facade.record.getSchema().getFields().get(position);
+                result.put(position, toAvro(field.schema(), overrideValues[i]));
+            }
+            return result;
+        }
+
+        /**
+         * Sets a field of the record. The value is stored as given and only converted to Avro's representation
+         * when the result is materialized.
+         *
+         * @throws IllegalArgumentException if the record has no field with the given name
+         */
+        @Override
+        public Object put(String key, Object value) {
+            Schema.Field field = facade.record.getSchema().getField(key);
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown field: " + key);
+            }
+            int index = indexOf(field.pos());
+            if (index >= 0) {
+                Object previous = overrideValues[index];
+                overrideValues[index] = value;
+                return previous;
+            }
+            Object previous = facade.getValue(field);
+            if (overrideCount == overridePositions.length) {
+                int capacity = Math.max(4, overrideCount * 2);
+                overridePositions = Arrays.copyOf(overridePositions, capacity);
+                overrideValues = Arrays.copyOf(overrideValues, capacity);
+            }
+            overridePositions[overrideCount] = field.pos();
+            overrideValues[overrideCount] = value;
+            overrideCount++;
+            return previous;
+        }
+
+        @Override
+        public Object get(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            Schema.Field field = facade.record.getSchema().getField((String) key);
+            return field == null ? null : getValue(field);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return facade.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return facade.size();
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<>() {
+                        private final Iterator<Schema.Field> iterator =
+                                facade.record.getSchema().getFields().iterator();
+
+                        @Override
+                        public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            Schema.Field field = iterator.next();
+                            return new SimpleImmutableEntry<>(field.name(), getValue(field));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return facade.size();
+                }
+            };
+        }
+
+        /**
+         * Returns the value of a field: its override if it has been set, or its converted record value.
+         *
+         * @param field the field to read
+         * @return the field value
+         */
+        private Object getValue(Schema.Field field) {
+            int index = indexOf(field.pos());
+            return index >= 0 ? overrideValues[index] : facade.getValue(field);
+        }
+
+        /**
+         * Finds the override for a field position. The overrides are scanned linearly, which is fast for the
+         * handful of fields a transform typically changes.
+         *
+         * @param position the field position
+         * @return the index of the override, or -1 if the field hasn't been set
+         */
+        private int indexOf(int position) {
+            for (int i = 0; i < overrideCount; i++) {
+                if (overridePositions[i] == position) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
     /**
      * FacadeList is a private class that provides a List view of a given Avro array.
      * This facilitates easier manipulation of the array's data.
@@ -161,6 +912,11 @@ public class AvroWrapper {
         private final Schema elementSchema;
         private final List<?> list;
 
+        /**
+         * The converted elements by index, allocated on first read when memoizing.
+         */
+        private Object[] values;
+
         /**
          * Creates a new FacadeList object that provides a List view of the given Avro array.
          * The List's elements will be the array items, coerced to appropriate Java types
@@ -176,7 +932,19 @@ public class AvroWrapper {
 
         @Override
         public Object get(int index) {
-            return coerceType(elementSchema, list.get(index));
+            if (!memoize) {
+                return coerceType(elementSchema, list.get(index));
+            }
+            if (values == null) {
+                values = new Object[list.size()];
+                Arrays.fill(values, UNCONVERTED);
+            }
+            Object value = values[index];
+            if (value == UNCONVERTED) {
+                value = coerceType(elementSchema, list.get(index));
+                values[index] = value;
+            }
+            return value;
         }
 
         @Override
@@ -196,6 +964,11 @@ public class AvroWrapper {
         private final Schema valueSchema;
         private final Map<String, Object> map;
 
+        /**
+         * The converted values by key, allocated on first read when memoizing.
+         */
+        private Map<String, Object> values;
+
         /**
          * Creates a new FacadeMap object that provides a Map view of the given Avro map.
          * The Map's values will be the map values, coerced to appropriate Java types
@@ -209,6 +982,28 @@ public class AvroWrapper {
             this.map = map;
         }
 
+        /**
+         * Returns the converted value for a key, converting it only once when memoizing.
+         *
+         * @param key the key of the value
+         * @param value the unconverted value
+         * @return the converted value
+         */
+        private Object getValue(String key, Object value) {
+            if (!memoize) {
+                return coerceType(valueSchema, value);
+            }
+            if (values == null) {
+                values = new HashMap<>();
+            }
+            Object converted = values.getOrDefault(key, UNCONVERTED);
+            if (converted == UNCONVERTED) {
+                converted = coerceType(valueSchema, value);
+                values.put(key, converted);
+            }
+            return converted;
+        }
+
         @Override
         public Set<Entry<String, Object>> entrySet() {
             return new AbstractSet<>() {
@@ -225,7 +1020,7 @@ public class AvroWrapper {
                         @Override
                         public Entry<String, Object> next() {
                             Entry<String, Object> entry = iterator.next();
-                            return new SimpleImmutableEntry<>(entry.getKey(), coerceType(valueSchema,
+                            return new SimpleImmutableEntry<>(entry.getKey(), getValue(entry.getKey(),
                                     entry.getValue()));
                         }
                     };
@@ -241,17 +1036,85 @@ public class AvroWrapper {
 
     public interface LogicalTypeConverter {
         Object convert(Object value);
+
+        /**
+         * Converts a value of the given logical type schema. Converters that need the schema, such as the decimal
+         * converter for values stored as bytes, override this method; by default it ignores the schema.
+         *
+         * @param value the value to convert
+         * @param schema the schema of the value, including its logical type
+         * @return the converted value
+         */
+        default Object convert(Object value, Schema schema) {
+            return convert(value);
+        }
+    }
+
+    /**
+     * Converts decimals stored as either fixed or bytes into BigDecimal. The bytes are read in place: unscaled
+     * values of up to eight bytes are assembled into a long, and longer ones are handed to BigInteger along with
+     * their offset in the backing array, so nothing is copied unless the buffer has no accessible array.
+     */
+    private static final class DecimalConverter implements LogicalTypeConverter {
+
+        @Override
+        public Object convert(Object value) {
+            return convert(value, ((GenericFixed) value).getSchema());
+        }
+
+        @Override
+        public Object convert(Object value, Schema schema) {
+            int scale = ((LogicalTypes.Decimal) schema.getLogicalType()).getScale();
+            if (value instanceof GenericFixed) {
+                return toBigDecimal(ByteBuffer.wrap(((GenericFixed) value).bytes()), scale);
+            } else if (value instanceof ByteBuffer) {
+                return toBigDecimal((ByteBuffer) value, scale);
+            } else if (value instanceof byte[]) {
+                return toBigDecimal(ByteBuffer.wrap((byte[]) value), scale);
+            }
+            throw new IllegalArgumentException("Unsupported type for decimal: " + value.getClass());
+        }
+
+        /**
+         * Builds a BigDecimal from the big-endian two's-complement unscaled value between the buffer's position
+         * and limit, without changing the buffer's position.
+         *
+         * @param buffer the buffer holding the unscaled value
+         * @param scale the scale of the decimal
+         * @return the decimal value
+         */
+        private static BigDecimal toBigDecimal(ByteBuffer buffer, int scale) {
+            int position = buffer.position();
+            int length = buffer.remaining();
+            if (length > 0 && length <= Long.BYTES) {
+                // The first byte is sign-extended, and the rest are shifted in unsigned.
+                long unscaled = buffer.get(position);
+                for (int i = 1; i < length; i++) {
+                    unscaled = (unscaled << 8) | (buffer.get(position + i) & 0xFF);
+                }
+                return BigDecimal.valueOf(unscaled, scale);
+            } else if (buffer.hasArray()) {
+                return new BigDecimal(new BigInteger(buffer.array(), buffer.arrayOffset() + position, length), scale);
+            }
+            byte[] bytes = new byte[length];
+            buffer.duplicate().get(bytes);
+            return new BigDecimal(new BigInteger(bytes), scale);
+        }
     }
 
     static {
+        GENERIC_DATA.addLogicalTypeConversion(new Conversions.DecimalConversion());
+        GENERIC_DATA.addLogicalTypeConversion(new Conversions.UUIDConversion());
+        GENERIC_DATA.addLogicalTypeConversion(new TimeConversions.DateConversion());
+        GENERIC_DATA.addLogicalTypeConversion(new TimeConversions.TimeMillisConversion());
+        GENERIC_DATA.addLogicalTypeConversion(new TimeConversions.TimeMicrosConversion());
+        GENERIC_DATA.addLogicalTypeConversion(new TimeConversions.TimestampMillisConversion());
+        GENERIC_DATA.addLogicalTypeConversion(new TimeConversions.TimestampMicrosConversion());
+        GENERIC_DATA.addLogicalTypeConversion(new TimeConversions.LocalTimestampMillisConversion());
+        GENERIC_DATA.addLogicalTypeConversion(new TimeConversions.LocalTimestampMicrosConversion());
+
         DEFAULT_LOGICAL_TYPE_CONVERTERS = Map.of(
-                "decimal", value -> {
-                    GenericData.Fixed fixed = (GenericData.Fixed) value;
-                    byte[] bytes = fixed.bytes();
-                    int scale = ((LogicalTypes.Decimal) fixed.getSchema().getLogicalType()).getScale();
-                    byte[] valueBytes = Arrays.copyOfRange(bytes, 0, bytes.length);
-                    return new BigDecimal(new BigInteger(valueBytes), scale);
-                },
+                "decimal", new DecimalConverter(),
                 "uuid", value -> UUID.fromString((String) value),
                 "date", value -> LocalDate.ofEpochDay((int) value),
                 "time-millis", value -> LocalTime.ofNanoOfDay(TimeUnit.MILLISECONDS.toNanos((int) value)),
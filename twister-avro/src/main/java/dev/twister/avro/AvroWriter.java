@@ -1,27 +1,50 @@
 package dev.twister.avro;
 
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.AvroTypeException;
+import org.apache.avro.Conversions;
 import org.apache.avro.LogicalType;
+import org.apache.avro.LogicalTypes;
 import org.apache.avro.Schema;
+import org.apache.avro.data.TimeConversions;
+import org.apache.avro.generic.GenericFixed;
+import org.apache.avro.generic.IndexedRecord;
 import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.DatumWriter;
 import org.apache.avro.io.Encoder;
 import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.avro.util.Utf8;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This class provides functionality to write Avro data based on the provided Avro schema and data.
+ * <p>
+ * AvroWriter is immutable and thread-safe: a single instance can be shared by any number of threads. Per-schema
+ * write plans are compiled on first use and cached in a concurrent map, and the only other shared state is the
+ * optional {@link StringCache}, which is itself thread-safe.
  */
 public class AvroWriter {
 
@@ -34,10 +57,78 @@ public class AvroWriter {
     /**
      * A map of logical type writers that will be used by this AvroWriter instance. Each entry maps a logical type name
      * to a LogicalTypeWriter capable of writing data of that logical type.
-     * Can be replaced with a custom map to override the default logical type writers.
+     * Can be replaced with a custom map to override the default logical type writers. The map is copied on
+     * construction, and the writers in it must be thread-safe.
      */
     private final Map<String, LogicalTypeWriter> logicalTypeWriters;
 
+    /**
+     * An optional cache of UTF-8 encoded strings used for map keys and opted-in string fields, or null if
+     * strings should always be encoded on write.
+     */
+    private final StringCache stringCache;
+
+    /**
+     * Whether input values are trusted to match the schema. When true, checks that only guard against malformed
+     * input are skipped while writing; see {@link #validate(Map, Schema)} for checking input separately.
+     */
+    private final boolean trustedInput;
+
+    /**
+     * Compiled write plans for record schemas, keyed by schema. Plans are immutable, so lookups never block and
+     * a plan compiled by racing threads is equal to the one that wins.
+     * <p>
+     * Entries are never evicted, so the cache holds one plan per distinct record schema this writer has seen,
+     * including nested ones. Callers that generate schemas on the fly should use a new writer per schema
+     * instead of sharing one.
+     */
+    private final ConcurrentHashMap<Schema, RecordPlan> recordPlans = new ConcurrentHashMap<>();
+
+    /**
+     * The ordinal of each symbol of enum schemas, keyed by schema, so writing a symbol checks and resolves it in
+     * one lookup. Like the record plans, entries are never evicted.
+     */
+    private final ConcurrentHashMap<Schema, Map<String, Integer>> enumOrdinals = new ConcurrentHashMap<>();
+
+    /**
+     * Whether IndexedRecords with the target schema can be encoded directly by Avro. This is only done when the
+     * logical type writers are the defaults, which encode values the same way as Avro's standard conversions.
+     */
+    private final boolean encodeRecordsDirectly;
+
+    /**
+     * The model used to encode generic records directly, with Avro's standard logical type conversions so that
+     * records holding converted values such as Instants are encoded like records holding raw ones.
+     */
+    private static final SpecificData GENERIC_MODEL = new SpecificData();
+
+    /**
+     * The writer for generic records and their fields, which are already in Avro's representation.
+     */
+    private static final RawDatumWriter RAW_WRITER = new RawDatumWriter(GENERIC_MODEL);
+
+    /**
+     * The writers for generated SpecificRecord classes, each using the class's own model and so the logical
+     * type conversions the class was generated with.
+     */
+    private static final ClassValue<RawDatumWriter> SPECIFIC_WRITERS = new ClassValue<>() {
+        @Override
+        protected RawDatumWriter computeValue(Class<?> type) {
+            return new RawDatumWriter(SpecificData.getForClass(type));
+        }
+    };
+
+    /**
+     * The wrapper used to write IndexedRecords whose schema differs from the target schema as Maps.
+     */
+    private static final AvroWrapper RECORD_WRAPPER = new AvroWrapper();
+
+    /**
+     * The inferrer used by {@link #write(Map, String)}. Inference keeps its state per call, so one inferrer is
+     * shared by every writer and thread.
+     */
+    private static final AvroSchemaInferrer SCHEMA_INFERRER = new AvroSchemaInferrer();
+
     /**
      * Default constructor that uses the default logical type writers.
      */
@@ -52,14 +143,63 @@ public class AvroWriter {
      *                           to a LogicalTypeWriter capable of writing data of that logical type.
      */
     public AvroWriter(Map<String, LogicalTypeWriter> logicalTypeWriters) {
-        this.logicalTypeWriters = logicalTypeWriters;
+        this(logicalTypeWriters, null);
+    }
+
+    /**
+     * Constructor that accepts a custom map of logical type writers and a cache of UTF-8 encoded strings.
+     *
+     * @param logicalTypeWriters A map of logical type writers. Each entry maps a logical type name
+     *                           to a LogicalTypeWriter capable of writing data of that logical type.
+     * @param stringCache A cache of UTF-8 encoded strings used for map keys and the string fields it names,
+     *                    or null to disable caching.
+     */
+    public AvroWriter(Map<String, LogicalTypeWriter> logicalTypeWriters, StringCache stringCache) {
+        this(logicalTypeWriters, stringCache, false);
+    }
+
+    /**
+     * Constructor that accepts a custom map of logical type writers, a cache of UTF-8 encoded strings, and whether
+     * input values are trusted.
+     * <p>
+     * A writer with trusted input skips the checks that only guard against values that don't match the schema:
+     * null values in non-nullable fields, enum symbols, and fixed sizes. Nullable unions pick their branch from
+     * whether the value is null instead of matching its class against each branch. Writing a value that doesn't
+     * match the schema with such a writer produces undefined output, so input should be validated upstream, for
+     * example with {@link #validate(Map, Schema)}.
+     *
+     * @param logicalTypeWriters A map of logical type writers. Each entry maps a logical type name
+     *                           to a LogicalTypeWriter capable of writing data of that logical type.
+     * @param stringCache A cache of UTF-8 encoded strings used for map keys and the string fields it names,
+     *                    or null to disable caching.
+     * @param trustedInput Whether input values are trusted to match the schema.
+     */
+    public AvroWriter(Map<String, LogicalTypeWriter> logicalTypeWriters, StringCache stringCache,
+                      boolean trustedInput) {
+        this.logicalTypeWriters = Collections.unmodifiableMap(new HashMap<>(logicalTypeWriters));
+        this.stringCache = stringCache;
+        this.trustedInput = trustedInput;
+        this.encodeRecordsDirectly = this.logicalTypeWriters.equals(DEFAULT_LOGICAL_TYPE_WRITERS);
+    }
+
+    /**
+     * Returns the cache of UTF-8 encoded strings used by this writer.
+     *
+     * @return The string cache, or null if caching is disabled.
+     */
+    public StringCache getStringCache() {
+        return stringCache;
     }
 
     /**
      * This class provides functionality to write Avro data based on a provided Avro schema and map data.
+     * <p>
+     * A MapDatumWriter holds the schema passed to its constructor or to {@link #setSchema(Schema)}, so like Avro's
+     * own datum writers it should not have its schema changed while other threads are writing with it. The
+     * enclosing AvroWriter can be shared freely.
      */
     public class MapDatumWriter implements DatumWriter<Map<String, Object>> {
-        private Schema schema;
+        private volatile Schema schema;
 
         public MapDatumWriter(Schema schema) {
             this.schema = schema;
@@ -70,167 +210,539 @@ public class AvroWriter {
             this.schema = schema;
         }
 
-        /**
-         * Writes an object to the encoder output based on the provided Avro schema.
-         *
-         * @param value The object to be written.
-         * @param schema The Avro schema to use for writing.
-         * @param out The encoder output to write to.
-         * @throws IOException If an error occurs during writing.
-         */
-        private void writeObject(Object value, Schema schema, Encoder out) throws IOException {
-            LogicalType logicalType = schema.getLogicalType();
-            if (logicalType != null) {
-                LogicalTypeWriter logicalTypeWriter = logicalTypeWriters.get(logicalType.getName());
-                if (logicalTypeWriter != null) {
-                    logicalTypeWriter.write(value, schema, out);
-                    return;
+        @Override
+        public void write(Map<String, Object> datum, Encoder out) throws IOException {
+            writeRecord(datum, schema, out);
+        }
+    }
+
+    /**
+     * Writes a record to the encoder output using the compiled plan for its schema.
+     *
+     * @param datum The map containing the record's field values.
+     * @param schema The Avro record schema to use for writing.
+     * @param out The encoder output to write to.
+     * @throws IOException If an error occurs during writing.
+     */
+    private void writeRecord(Map<String, Object> datum, Schema schema, Encoder out) throws IOException {
+        RecordPlan plan = getRecordPlan(schema);
+        Schema.Field[] fields = plan.fields;
+        IndexedRecord record = encodeRecordsDirectly ? AvroWrapper.getWrappedRecord(datum) : null;
+        if (record != null && record.getSchema().equals(schema)) {
+            // A facade over a record with this schema: fields are encoded straight from the record, skipping the
+            // conversion to Java objects and back. Fields changed through a mutable facade are converted back
+            // to Avro's representation first.
+            RawDatumWriter rawWriter = getRawWriter(record);
+            AvroWrapper.MutableFacade mutable = (datum instanceof AvroWrapper.MutableFacade)
+                    ? (AvroWrapper.MutableFacade) datum
+                    : null;
+            for (int i = 0; i < fields.length; i++) {
+                Object value = mutable == null ? record.get(i) : mutable.getAvroValue(i);
+                rawWriter.write(fields[i].schema(), value, out);
+            }
+            return;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            writeField(datum.get(fields[i].name()), fields[i], out, plan.cacheStrings[i]);
+        }
+    }
+
+    /**
+     * Writes the value of one record field to the encoder output.
+     *
+     * @param value The field value.
+     * @param field The field to write.
+     * @param out The encoder output to write to.
+     * @param cacheStrings Whether string values should be written through the string cache.
+     * @throws IOException If the value is null for a non-nullable field or an error occurs during writing.
+     */
+    private void writeField(Object value, Schema.Field field, Encoder out, boolean cacheStrings) throws IOException {
+        Schema fieldSchema = field.schema();
+        if (value == null && fieldSchema.getType() != Schema.Type.UNION) {
+            if (!trustedInput && fieldSchema.getType() != Schema.Type.NULL) {
+                throw new IOException("Null value for non-nullable field: " + field.name());
+            }
+            out.writeNull();
+        } else {
+            writeObject(value, fieldSchema, out, cacheStrings);
+        }
+    }
+
+    /**
+     * Writes an IndexedRecord, such as a generic or generated record nested in a map, to the encoder output.
+     * A record with the target schema is encoded directly, and any other record is written through an
+     * {@link AvroWrapper} view of its fields.
+     *
+     * @param record The record to write.
+     * @param schema The Avro record schema to use for writing.
+     * @param out The encoder output to write to.
+     * @throws IOException If an error occurs during writing.
+     */
+    private void writeIndexedRecord(IndexedRecord record, Schema schema, Encoder out) throws IOException {
+        if (encodeRecordsDirectly && record.getSchema().equals(schema)) {
+            getRawWriter(record).write(schema, record, out);
+        } else {
+            writeRecord(RECORD_WRAPPER.wrap(record), schema, out);
+        }
+    }
+
+    /**
+     * Returns the writer that encodes a record directly with the record's own model.
+     *
+     * @param record The record to write.
+     * @return The writer for the record's class.
+     */
+    private static RawDatumWriter getRawWriter(IndexedRecord record) {
+        return record instanceof SpecificRecord ? SPECIFIC_WRITERS.get(record.getClass()) : RAW_WRITER;
+    }
+
+    /**
+     * Returns the ordinals of an enum schema's symbols, computing and caching them on first use.
+     *
+     * @param schema The Avro enum schema.
+     * @return The ordinal of each symbol.
+     */
+    private Map<String, Integer> getEnumOrdinals(Schema schema) {
+        Map<String, Integer> ordinals = enumOrdinals.get(schema);
+        if (ordinals == null) {
+            ordinals = enumOrdinals.computeIfAbsent(schema, key -> {
+                List<String> symbols = key.getEnumSymbols();
+                Map<String, Integer> map = new HashMap<>(symbols.size() * 2);
+                for (int i = 0; i < symbols.size(); i++) {
+                    map.put(symbols.get(i), i);
                 }
+                return map;
+            });
+        }
+        return ordinals;
+    }
+
+    /**
+     * Returns the compiled plan for a record schema, compiling and caching it on first use.
+     *
+     * @param schema The Avro record schema.
+     * @return The plan for the schema.
+     */
+    private RecordPlan getRecordPlan(Schema schema) {
+        RecordPlan plan = recordPlans.get(schema);
+        if (plan == null) {
+            plan = recordPlans.computeIfAbsent(schema, key -> new RecordPlan(key, stringCache));
+        }
+        return plan;
+    }
+
+    /**
+     * Writes an object to the encoder output based on the provided Avro schema.
+     *
+     * @param value The object to be written.
+     * @param schema The Avro schema to use for writing.
+     * @param out The encoder output to write to.
+     * @param cacheStrings Whether string values should be written through the string cache.
+     * @throws IOException If an error occurs during writing.
+     */
+    private void writeObject(Object value, Schema schema, Encoder out, boolean cacheStrings) throws IOException {
+        LogicalType logicalType = schema.getLogicalType();
+        if (logicalType != null) {
+            LogicalTypeWriter logicalTypeWriter = logicalTypeWriters.get(logicalType.getName());
+            if (logicalTypeWriter != null) {
+                logicalTypeWriter.write(value, schema, out);
+                return;
             }
+        }
 
-            switch (schema.getType()) {
-                case BOOLEAN:
-                    out.writeBoolean((Boolean) value);
-                    break;
-                case INT:
-                    out.writeInt((Integer) value);
-                    break;
-                case LONG:
-                    out.writeLong((Long) value);
-                    break;
-                case FLOAT:
-                    out.writeFloat((Float) value);
-                    break;
-                case DOUBLE:
-                    out.writeDouble((Double) value);
-                    break;
-                case STRING:
+        switch (schema.getType()) {
+            case BOOLEAN:
+                out.writeBoolean((Boolean) value);
+                break;
+            case INT:
+                out.writeInt((Integer) value);
+                break;
+            case LONG:
+                out.writeLong((Long) value);
+                break;
+            case FLOAT:
+                out.writeFloat((Float) value);
+                break;
+            case DOUBLE:
+                out.writeDouble((Double) value);
+                break;
+            case STRING:
+                if (cacheStrings) {
+                    out.writeString(stringCache.get((String) value));
+                } else {
                     out.writeString((String) value);
-                    break;
-                case BYTES:
-                    out.writeBytes((ByteBuffer) value);
-                    break;
-                case RECORD:
-                    Map<String, Object> recordValue = (Map<String, Object>) value;
-                    MapDatumWriter recordWriter = new MapDatumWriter(schema);
-                    recordWriter.write(recordValue, out);
-                    break;
-                case ENUM:
-                    String enumValue = (String) value;
-                    int index = schema.getEnumSymbols().indexOf(enumValue);
-                    if (index < 0) {
-                        throw new IOException("Invalid enum value: " + enumValue + " for schema: " + schema);
-                    }
-                    out.writeEnum(index);
-                    break;
-                case ARRAY:
-                    List<Object> arrayValue = (List<Object>) value;
-                    out.writeArrayStart();
-                    out.setItemCount(arrayValue.size());
-                    Schema arraySchema = schema.getElementType();
-                    for (Object item : arrayValue) {
-                        out.startItem();
-                        writeObject(item, arraySchema, out);
-                    }
-                    out.writeArrayEnd();
-                    break;
-                case MAP:
-                    Map<String, Object> mapValue = (Map<String, Object>) value;
-                    out.writeMapStart();
-                    out.setItemCount(mapValue.size());
-                    Schema mapValueSchema = schema.getValueType();
-                    for (Map.Entry<String, Object> entry : mapValue.entrySet()) {
-                        out.startItem();
+                }
+                break;
+            case BYTES:
+                out.writeBytes((ByteBuffer) value);
+                break;
+            case RECORD:
+                if (value instanceof IndexedRecord) {
+                    writeIndexedRecord((IndexedRecord) value, schema, out);
+                } else {
+                    writeRecord((Map<String, Object>) value, schema, out);
+                }
+                break;
+            case ENUM:
+                String enumValue = (String) value;
+                Integer ordinal = getEnumOrdinals(schema).get(enumValue);
+                if (ordinal == null) {
+                    throw new IOException("Invalid enum value: " + enumValue + " for enum: " + schema.getFullName());
+                }
+                out.writeEnum(ordinal);
+                break;
+            case ARRAY:
+                List<Object> arrayValue = (List<Object>) value;
+                out.writeArrayStart();
+                out.setItemCount(arrayValue.size());
+                Schema arraySchema = schema.getElementType();
+                for (Object item : arrayValue) {
+                    out.startItem();
+                    writeObject(item, arraySchema, out, cacheStrings);
+                }
+                out.writeArrayEnd();
+                break;
+            case MAP:
+                Map<String, Object> mapValue = (Map<String, Object>) value;
+                out.writeMapStart();
+                out.setItemCount(mapValue.size());
+                Schema mapValueSchema = schema.getValueType();
+                for (Map.Entry<String, Object> entry : mapValue.entrySet()) {
+                    out.startItem();
+                    if (stringCache != null) {
+                        out.writeString(stringCache.get(entry.getKey()));
+                    } else {
                         out.writeString(entry.getKey());
-                        writeObject(entry.getValue(), mapValueSchema, out);
-                    }
-                    out.writeMapEnd();
-                    break;
-                case UNION:
-                    List<Schema> unionSchemas = schema.getTypes();
-                    int matchingSchemaIndex = getMatchingSchemaIndex(value, unionSchemas);
-                    out.writeIndex(matchingSchemaIndex);
-                    writeObject(value, unionSchemas.get(matchingSchemaIndex), out);
-                    break;
-                case FIXED:
-                    ByteBuffer fixedValueBuffer = (ByteBuffer) value;
-                    if (fixedValueBuffer.remaining() != schema.getFixedSize()) {
-                        throw new IOException("Invalid fixed value size: " + fixedValueBuffer.remaining()
-                                + " for schema: " + schema);
                     }
-                    out.writeFixed(fixedValueBuffer);
-                    break;
-                default:
-                    throw new UnsupportedOperationException("Unsupported type: " + schema.getType());
+                    writeObject(entry.getValue(), mapValueSchema, out, cacheStrings);
+                }
+                out.writeMapEnd();
+                break;
+            case UNION:
+                List<Schema> unionSchemas = schema.getTypes();
+                int matchingSchemaIndex = trustedInput
+                        ? getTrustedSchemaIndex(value, unionSchemas)
+                        : getMatchingSchemaIndex(value, unionSchemas);
+                out.writeIndex(matchingSchemaIndex);
+                writeObject(value, unionSchemas.get(matchingSchemaIndex), out, cacheStrings);
+                break;
+            case FIXED:
+                ByteBuffer fixedValueBuffer = (ByteBuffer) value;
+                if (!trustedInput && fixedValueBuffer.remaining() != schema.getFixedSize()) {
+                    throw new IOException("Invalid fixed value size: " + fixedValueBuffer.remaining()
+                            + " for fixed: " + schema.getFullName());
+                }
+                out.writeFixed(fixedValueBuffer);
+                break;
+            case NULL:
+                out.writeNull();
+                break;
+            default:
+                throw new UnsupportedOperationException("Unsupported type: " + schema.getType());
+        }
+    }
+
+    /**
+     * Returns the expected Java class for the provided Avro schema.
+     *
+     * @param schema The Avro schema to get the expected class for.
+     * @return The expected Java class for the provided Avro schema.
+     * @throws UnsupportedOperationException If the schema type is unsupported.
+     */
+    private Class<?> getExpectedClass(Schema schema) {
+        LogicalType logicalType = schema.getLogicalType();
+        if (logicalType != null) {
+            LogicalTypeWriter logicalTypeWriter = logicalTypeWriters.get(logicalType.getName());
+            if (logicalTypeWriter != null) {
+                return logicalTypeWriter.getExpectedClass();
             }
         }
 
-        @Override
-        public void write(Map<String, Object> datum, Encoder out) throws IOException {
-            for (Schema.Field field : schema.getFields()) {
-                Object value = datum.get(field.name());
-                if (value == null) {
-                    out.writeNull();
-                } else {
-                    writeObject(value, field.schema(), out);
+        switch (schema.getType()) {
+            case BOOLEAN: return Boolean.class;
+            case INT:     return Integer.class;
+            case LONG:    return Long.class;
+            case FLOAT:   return Float.class;
+            case DOUBLE:  return Double.class;
+            case ENUM:
+            case STRING:  return String.class;
+            case FIXED:
+            case BYTES:   return ByteBuffer.class;
+            case ARRAY:   return List.class;
+            case RECORD:
+            case MAP:     return Map.class;
+            case NULL:    return null;
+            default:      throw new UnsupportedOperationException("Unsupported type: " + schema.getType());
+        }
+    }
+
+    /**
+     * Returns the index of the matching schema in the list of union schemas.
+     *
+     * @param value The value to match the schema with.
+     * @param unionSchemas The list of union schemas.
+     * @return The index of the matching schema in the list of union schemas.
+     * @throws IOException If no matching schema is found.
+     */
+    private int getMatchingSchemaIndex(Object value, List<Schema> unionSchemas) throws IOException {
+        int index = findMatchingSchemaIndex(value, unionSchemas);
+        if (index < 0) {
+            throw new IOException("Invalid union value of type: "
+                    + (value == null ? "null" : value.getClass().getName()) + " for union of "
+                    + unionSchemas.size() + " branches");
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index of the matching schema in the list of union schemas, or -1 if none matches.
+     *
+     * @param value The value to match the schema with.
+     * @param unionSchemas The list of union schemas.
+     * @return The index of the matching schema, or -1 if no schema matches.
+     */
+    private int findMatchingSchemaIndex(Object value, List<Schema> unionSchemas) {
+        for (int i = 0; i < unionSchemas.size(); i++) {
+            Schema unionSchema = unionSchemas.get(i);
+            Class<?> expectedClass = getExpectedClass(unionSchema);
+            if (value == null && expectedClass == null) {
+                return i;
+            }
+            if (value != null && expectedClass != null && expectedClass.isInstance(value)) {
+                return i;
+            }
+            if (value instanceof IndexedRecord && unionSchema.getType() == Schema.Type.RECORD
+                    && ((IndexedRecord) value).getSchema().getFullName().equals(unionSchema.getFullName())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the union schema to write a trusted value with. Two-branch unions with a null branch
+     * are resolved from whether the value is null alone; other unions fall back to matching the value's class.
+     *
+     * @param value The value to match the schema with.
+     * @param unionSchemas The list of union schemas.
+     * @return The index of the union schema to write the value with.
+     * @throws IOException If no matching schema is found.
+     */
+    private int getTrustedSchemaIndex(Object value, List<Schema> unionSchemas) throws IOException {
+        if (unionSchemas.size() == 2) {
+            if (unionSchemas.get(0).getType() == Schema.Type.NULL) {
+                return value == null ? 0 : 1;
+            }
+            if (unionSchemas.get(1).getType() == Schema.Type.NULL) {
+                return value == null ? 1 : 0;
+            }
+        }
+        return getMatchingSchemaIndex(value, unionSchemas);
+    }
+
+    /**
+     * Checks the given object against a record schema without writing it, and reports every violation found
+     * instead of stopping at the first one. Violations are returned as plain {@link ValidationError} objects,
+     * so validating input doesn't pay for exceptions or for messages that are never read.
+     *
+     * @param object The object to be validated.
+     * @param schema The Avro record schema to validate against.
+     * @return The violations found, or an empty list if the object can be written with the schema.
+     */
+    public List<ValidationError> validate(Map<String, Object> object, Schema schema) {
+        List<ValidationError> errors = new ArrayList<>();
+        validateRecord(object, schema, new StringBuilder(), errors);
+        return errors;
+    }
+
+    /**
+     * Validates the fields of a record, appending each field name to the path while it is being validated.
+     *
+     * @param datum The map containing the record's field values.
+     * @param schema The Avro record schema to validate against.
+     * @param path The path of the record, which is restored before returning.
+     * @param errors The list to add violations to.
+     */
+    private void validateRecord(Map<String, Object> datum, Schema schema, StringBuilder path,
+                                List<ValidationError> errors) {
+        for (Schema.Field field : getRecordPlan(schema).fields) {
+            int length = path.length();
+            if (length > 0) {
+                path.append('.');
+            }
+            path.append(field.name());
+            validateObject(datum.get(field.name()), field.schema(), path, errors);
+            path.setLength(length);
+        }
+    }
+
+    /**
+     * Validates a value against a schema, recursing into records, arrays, maps and unions.
+     *
+     * @param value The value to validate.
+     * @param schema The Avro schema to validate against.
+     * @param path The path of the value, which is restored before returning.
+     * @param errors The list to add violations to.
+     */
+    private void validateObject(Object value, Schema schema, StringBuilder path, List<ValidationError> errors) {
+        if (schema.getType() == Schema.Type.UNION) {
+            int index = findMatchingSchemaIndex(value, schema.getTypes());
+            if (index < 0) {
+                errors.add(new ValidationError(path.toString(), schema, value, "no matching union branch"));
+            } else {
+                validateObject(value, schema.getTypes().get(index), path, errors);
+            }
+            return;
+        }
+        if (value instanceof IndexedRecord && schema.getType() == Schema.Type.RECORD) {
+            // The writer accepts nested records and writes their fields by name, so the same view is checked here.
+            validateRecord(RECORD_WRAPPER.wrap((IndexedRecord) value), schema, path, errors);
+            return;
+        }
+
+        Class<?> expectedClass = getExpectedClass(schema);
+        if (expectedClass == null ? value != null : !expectedClass.isInstance(value)) {
+            errors.add(new ValidationError(path.toString(), schema, value, "type mismatch"));
+            return;
+        }
+        LogicalType logicalType = schema.getLogicalType();
+        if (logicalType != null) {
+            LogicalTypeWriter logicalTypeWriter = logicalTypeWriters.get(logicalType.getName());
+            if (logicalTypeWriter instanceof DecimalWriter) {
+                String reason = DecimalWriter.findViolation((BigDecimal) value, schema);
+                if (reason != null) {
+                    errors.add(new ValidationError(path.toString(), schema, value, reason));
                 }
+                return;
+            } else if (logicalTypeWriter != null) {
+                return;
             }
         }
 
+        int length = path.length();
+        switch (schema.getType()) {
+            case RECORD:
+                validateRecord((Map<String, Object>) value, schema, path, errors);
+                break;
+            case ENUM:
+                if (!schema.hasEnumSymbol((String) value)) {
+                    errors.add(new ValidationError(path.toString(), schema, value, "unknown enum symbol"));
+                }
+                break;
+            case FIXED:
+                if (((ByteBuffer) value).remaining() != schema.getFixedSize()) {
+                    errors.add(new ValidationError(path.toString(), schema, value, "wrong fixed size"));
+                }
+                break;
+            case ARRAY:
+                List<?> arrayValue = (List<?>) value;
+                for (int i = 0; i < arrayValue.size(); i++) {
+                    path.append('[').append(i).append(']');
+                    validateObject(arrayValue.get(i), schema.getElementType(), path, errors);
+                    path.setLength(length);
+                }
+                break;
+            case MAP:
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    path.append('[').append(entry.getKey()).append(']');
+                    if (!(entry.getKey() instanceof String)) {
+                        errors.add(new ValidationError(path.toString(), schema, entry.getKey(), "non-string map key"));
+                    } else {
+                        validateObject(entry.getValue(), schema.getValueType(), path, errors);
+                    }
+                    path.setLength(length);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * A single violation found by {@link #validate(Map, Schema)}. It records where the violation is, the schema
+     * the value was checked against, the offending value and a short reason. The message is only built when it
+     * is asked for.
+     */
+    public static final class ValidationError {
+        private final String path;
+        private final Schema schema;
+        private final Object value;
+        private final String reason;
+
+        ValidationError(String path, Schema schema, Object value, String reason) {
+            this.path = path;
+            this.schema = schema;
+            this.value = value;
+            this.reason = reason;
+        }
+
         /**
-         * Returns the expected Java class for the provided Avro schema.
+         * Returns the path of the offending value, with record fields separated by dots and array indexes and
+         * map keys in brackets, for example {@code orders[2].lines[sku]}.
          *
-         * @param schema The Avro schema to get the expected class for.
-         * @return The expected Java class for the provided Avro schema.
-         * @throws UnsupportedOperationException If the schema type is unsupported.
+         * @return The path of the offending value.
          */
-        private Class<?> getExpectedClass(Schema schema) {
-            LogicalType logicalType = schema.getLogicalType();
-            if (logicalType != null) {
-                LogicalTypeWriter logicalTypeWriter = logicalTypeWriters.get(logicalType.getName());
-                if (logicalTypeWriter != null) {
-                    return logicalTypeWriter.getExpectedClass();
-                }
-            }
+        public String getPath() {
+            return path;
+        }
 
-            switch (schema.getType()) {
-                case BOOLEAN: return Boolean.class;
-                case INT:     return Integer.class;
-                case LONG:    return Long.class;
-                case FLOAT:   return Float.class;
-                case DOUBLE:  return Double.class;
-                case ENUM:
-                case STRING:  return String.class;
-                case FIXED:
-                case BYTES:   return ByteBuffer.class;
-                case ARRAY:   return List.class;
-                case RECORD:
-                case MAP:     return Map.class;
-                case NULL:    return null;
-                default:      throw new UnsupportedOperationException("Unsupported type: " + schema.getType());
-            }
+        /**
+         * Returns the schema the value was checked against.
+         *
+         * @return The schema of the offending value.
+         */
+        public Schema getSchema() {
+            return schema;
         }
 
         /**
-         * Returns the index of the matching schema in the list of union schemas.
+         * Returns the offending value.
          *
-         * @param value The value to match the schema with.
-         * @param unionSchemas The list of union schemas.
-         * @return The index of the matching schema in the list of union schemas.
-         * @throws IOException If no matching schema is found.
+         * @return The offending value, which may be null.
          */
-        private int getMatchingSchemaIndex(Object value, List<Schema> unionSchemas) throws IOException {
-            for (int i = 0; i < unionSchemas.size(); i++) {
-                Schema unionSchema = unionSchemas.get(i);
-                Class<?> expectedClass = getExpectedClass(unionSchema);
-                if (value == null && expectedClass == null) {
-                    return i;
-                }
-                if (value != null && expectedClass != null && expectedClass.isInstance(value)) {
-                    return i;
-                }
+        public Object getValue() {
+            return value;
+        }
+
+        /**
+         * Returns a short, constant description of the violation, such as "type mismatch".
+         *
+         * @return The reason for the violation.
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        /**
+         * Returns a readable description of the violation.
+         *
+         * @return The violation message.
+         */
+        public String getMessage() {
+            return path + ": " + reason + " (expected " + schema.getType().getName() + ", got "
+                    + (value == null ? "null" : value.getClass().getName()) + ")";
+        }
+
+        @Override
+        public String toString() {
+            return getMessage();
+        }
+    }
+
+    /**
+     * An immutable write plan for a record schema. It holds the record's fields in write order, along with
+     * whether each field's string values go through the string cache, so neither is recomputed per record.
+     */
+    private static final class RecordPlan {
+        private final Schema.Field[] fields;
+        private final boolean[] cacheStrings;
+
+        RecordPlan(Schema schema, StringCache stringCache) {
+            this.fields = schema.getFields().toArray(new Schema.Field[0]);
+            this.cacheStrings = new boolean[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                cacheStrings[i] = stringCache != null && stringCache.isCachedField(fields[i].name());
             }
-            throw new IOException("Invalid union value: " + value + " for schema: " + unionSchemas);
         }
     }
 
@@ -245,7 +757,7 @@ public class AvroWriter {
     public ByteBuffer write(Map<String, Object> object, String recordName) throws IOException {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(outputStream, null);
-        MapDatumWriter writer = new MapDatumWriter(new AvroSchemaInferrer().infer(object, recordName));
+        MapDatumWriter writer = new MapDatumWriter(SCHEMA_INFERRER.infer(object, recordName));
         writer.write(object, encoder);
         encoder.flush();
         return ByteBuffer.wrap(outputStream.toByteArray());
@@ -268,6 +780,161 @@ public class AvroWriter {
         return ByteBuffer.wrap(outputStream.toByteArray());
     }
 
+    /**
+     * Writes the given IndexedRecord to a ByteBuffer based on the provided Avro schema. A record with the same
+     * schema is encoded directly with its own model, without converting its fields to Java objects, unless this
+     * writer has custom logical type writers; any other record is written field by field through an
+     * {@link AvroWrapper} view, like a Map.
+     *
+     * @param record The record to be written.
+     * @param schema The Avro schema to use for writing.
+     * @return A ByteBuffer containing the written Avro data.
+     * @throws IOException If an error occurs during writing.
+     */
+    public ByteBuffer write(IndexedRecord record, Schema schema) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(outputStream, null);
+        writeIndexedRecord(record, schema, encoder);
+        encoder.flush();
+        return ByteBuffer.wrap(outputStream.toByteArray());
+    }
+
+    /**
+     * Encodes values held in Avro's representation, such as the fields of a wrapped record. It only exposes the
+     * schema-driven write method of SpecificDatumWriter, which keeps no per-write state, so a single instance is
+     * shared per model.
+     * <p>
+     * Values that don't match the schema fail with an IOException, as they do when written from a Map, and fixed
+     * values are checked against the schema's size, which Avro itself doesn't do.
+     */
+    private static final class RawDatumWriter extends SpecificDatumWriter<Object> {
+
+        RawDatumWriter(SpecificData model) {
+            super(model);
+        }
+
+        /**
+         * Writes a value in Avro's representation with the given schema.
+         *
+         * @param schema The Avro schema of the value.
+         * @param datum The value to write.
+         * @param out The encoder output to write to.
+         * @throws IOException If the value doesn't match the schema or an error occurs during writing.
+         */
+        @Override
+        public void write(Schema schema, Object datum, Encoder out) throws IOException {
+            try {
+                super.write(schema, datum, out);
+            } catch (NullPointerException | ClassCastException | AvroRuntimeException e) {
+                throw new IOException("Value doesn't match schema " + schema.getFullName() + ": " + e.getMessage(),
+                        e);
+            }
+        }
+
+        @Override
+        protected void writeFixed(Schema schema, Object datum, Encoder out) throws IOException {
+            if (((GenericFixed) datum).bytes().length != schema.getFixedSize()) {
+                throw new AvroTypeException("Fixed value of " + ((GenericFixed) datum).bytes().length
+                        + " bytes for " + schema.getFullName() + " of size " + schema.getFixedSize());
+            }
+            super.writeFixed(schema, datum, out);
+        }
+    }
+
+    /**
+     * A bounded cache from strings to their UTF-8 encoding. Map keys, and the values of the string fields named
+     * when the cache is created, are looked up here so that repeated strings are written as a length and a byte
+     * copy instead of being re-encoded on every write.
+     * <p>
+     * Once the cache holds maxSize entries, new strings are still encoded and written but are no longer added.
+     * Hit and miss counters are kept so the cache size and the set of cached fields can be tuned. The cache is
+     * safe to share between threads.
+     */
+    public static class StringCache {
+        private final int maxSize;
+        private final Set<String> cachedFields;
+        private final ConcurrentHashMap<String, Utf8> cache = new ConcurrentHashMap<>();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        /**
+         * Creates a cache that is used for map keys only.
+         *
+         * @param maxSize The maximum number of strings to cache.
+         */
+        public StringCache(int maxSize) {
+            this(maxSize, Set.of());
+        }
+
+        /**
+         * Creates a cache that is used for map keys and the values of the given string fields.
+         *
+         * @param maxSize The maximum number of strings to cache.
+         * @param cachedFields The names of record fields whose string values should be cached.
+         */
+        public StringCache(int maxSize, Set<String> cachedFields) {
+            this.maxSize = maxSize;
+            this.cachedFields = cachedFields;
+        }
+
+        /**
+         * Returns the UTF-8 encoding of a string, from the cache if present.
+         *
+         * @param value The string to encode.
+         * @return The UTF-8 encoding of the string.
+         */
+        Utf8 get(String value) {
+            Utf8 utf8 = cache.get(value);
+            if (utf8 != null) {
+                hits.increment();
+                return utf8;
+            }
+            misses.increment();
+            utf8 = new Utf8(value);
+            if (cache.size() < maxSize) {
+                cache.putIfAbsent(value, utf8);
+            }
+            return utf8;
+        }
+
+        /**
+         * Returns whether the string values of the given record field should be cached.
+         *
+         * @param fieldName The name of the record field.
+         * @return True if the field's string values should be cached.
+         */
+        boolean isCachedField(String fieldName) {
+            return cachedFields.contains(fieldName);
+        }
+
+        /**
+         * Returns the number of lookups that found a cached encoding.
+         *
+         * @return The number of cache hits.
+         */
+        public long getHits() {
+            return hits.sum();
+        }
+
+        /**
+         * Returns the number of lookups that had to encode the string.
+         *
+         * @return The number of cache misses.
+         */
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        /**
+         * Returns the number of strings currently cached.
+         *
+         * @return The number of cached strings.
+         */
+        public int size() {
+            return cache.size();
+        }
+    }
+
     /**
      * This interface provides a contract for classes that write logical types based on a provided Avro schema and data.
      */
@@ -302,22 +969,156 @@ public class AvroWriter {
                 "local-timestamp-millis", new LocalTimestampMillisWriter(),
                 "local-timestamp-micros", new LocalTimestampMicrosWriter()
         );
+        GENERIC_MODEL.addLogicalTypeConversion(new Conversions.DecimalConversion());
+        GENERIC_MODEL.addLogicalTypeConversion(new Conversions.UUIDConversion());
+        GENERIC_MODEL.addLogicalTypeConversion(new TimeConversions.DateConversion());
+        GENERIC_MODEL.addLogicalTypeConversion(new TimeConversions.TimeMillisConversion());
+        GENERIC_MODEL.addLogicalTypeConversion(new TimeConversions.TimeMicrosConversion());
+        GENERIC_MODEL.addLogicalTypeConversion(new TimeConversions.TimestampMillisConversion());
+        GENERIC_MODEL.addLogicalTypeConversion(new TimeConversions.TimestampMicrosConversion());
+        GENERIC_MODEL.addLogicalTypeConversion(new TimeConversions.LocalTimestampMillisConversion());
+        GENERIC_MODEL.addLogicalTypeConversion(new TimeConversions.LocalTimestampMicrosConversion());
     }
 
     /**
      * A LogicalTypeWriter implementation for writing "decimal" Avro logical type data.
      * The expected Java class is java.math.BigDecimal.
+     * <p>
+     * Values are rescaled to the scale declared in the schema and checked against its precision. Both BYTES and
+     * FIXED backed decimals are supported. Values whose unscaled form fits in a long are encoded directly from the
+     * long into a per-thread scratch buffer, without going through BigInteger.
      */
     public static class DecimalWriter implements AvroWriter.LogicalTypeWriter {
+
+        /**
+         * The largest precision for which an unscaled value is guaranteed to fit in a long.
+         */
+        private static final int MAX_LONG_PRECISION = 18;
+
+        private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[16]);
+
         @Override
         public void write(Object value, Schema schema, Encoder out) throws IOException {
-            out.writeBytes(((BigDecimal) value).unscaledValue().toByteArray());
+            LogicalTypes.Decimal decimalType = (LogicalTypes.Decimal) schema.getLogicalType();
+            BigDecimal decimal = rescale((BigDecimal) value, decimalType);
+            boolean isFixed = schema.getType() == Schema.Type.FIXED;
+
+            if (decimal.precision() <= MAX_LONG_PRECISION) {
+                long unscaled = decimal.scaleByPowerOfTen(decimal.scale()).longValueExact();
+                int length = (64 - Long.numberOfLeadingZeros(unscaled ^ (unscaled >> 63))) / 8 + 1;
+                int size = isFixed ? checkFixedSize(length, schema) : length;
+                byte[] buffer = scratch(size);
+                int padding = size - length;
+                Arrays.fill(buffer, 0, padding, unscaled < 0 ? (byte) 0xFF : 0);
+                for (int i = size - 1; i >= padding; i--) {
+                    buffer[i] = (byte) unscaled;
+                    unscaled >>= 8;
+                }
+                if (isFixed) {
+                    out.writeFixed(buffer, 0, size);
+                } else {
+                    out.writeBytes(buffer, 0, size);
+                }
+            } else {
+                byte[] bytes = decimal.unscaledValue().toByteArray();
+                if (isFixed) {
+                    int size = checkFixedSize(bytes.length, schema);
+                    byte[] buffer = scratch(size);
+                    int padding = size - bytes.length;
+                    Arrays.fill(buffer, 0, padding, decimal.signum() < 0 ? (byte) 0xFF : 0);
+                    System.arraycopy(bytes, 0, buffer, padding, bytes.length);
+                    out.writeFixed(buffer, 0, size);
+                } else {
+                    out.writeBytes(bytes);
+                }
+            }
         }
 
         @Override
         public Class<?> getExpectedClass() {
             return BigDecimal.class;
         }
+
+        /**
+         * Returns why a decimal value can't be written with a schema, without throwing, for
+         * {@link AvroWriter#validate(Map, Schema)}. The checks are the same ones {@link #write} makes.
+         *
+         * @param value The decimal value to check.
+         * @param schema The BYTES or FIXED schema of the decimal.
+         * @return The reason the value can't be written, or null if it can.
+         */
+        static String findViolation(BigDecimal value, Schema schema) {
+            LogicalTypes.Decimal decimalType = (LogicalTypes.Decimal) schema.getLogicalType();
+            // Trailing zeros can be dropped or added freely, so any scale at or below the target's is exact.
+            if (value.stripTrailingZeros().scale() > decimalType.getScale()) {
+                return "cannot rescale decimal";
+            }
+            BigDecimal decimal = value.setScale(decimalType.getScale(), RoundingMode.UNNECESSARY);
+            if (decimal.precision() > decimalType.getPrecision()) {
+                return "decimal precision exceeded";
+            }
+            if (schema.getType() == Schema.Type.FIXED
+                    && decimal.unscaledValue().bitLength() / 8 + 1 > schema.getFixedSize()) {
+                return "wrong fixed size";
+            }
+            return null;
+        }
+
+        /**
+         * Rescales a decimal value to the scale of the decimal logical type and validates its precision.
+         *
+         * @param value The decimal value to rescale.
+         * @param decimalType The decimal logical type from the schema.
+         * @return The value with the scale of the logical type.
+         * @throws IOException If the value can't be rescaled without rounding or exceeds the precision.
+         */
+        private static BigDecimal rescale(BigDecimal value, LogicalTypes.Decimal decimalType) throws IOException {
+            BigDecimal decimal = value;
+            if (decimal.scale() != decimalType.getScale()) {
+                try {
+                    decimal = decimal.setScale(decimalType.getScale(), RoundingMode.UNNECESSARY);
+                } catch (ArithmeticException e) {
+                    throw new IOException("Cannot rescale decimal value: " + value + " to scale: "
+                            + decimalType.getScale(), e);
+                }
+            }
+            if (decimal.precision() > decimalType.getPrecision()) {
+                throw new IOException("Decimal value: " + value + " exceeds precision: "
+                        + decimalType.getPrecision());
+            }
+            return decimal;
+        }
+
+        /**
+         * Checks that an unscaled value of the given length fits in the fixed size of the schema.
+         *
+         * @param length The number of bytes needed for the unscaled value.
+         * @param schema The FIXED schema of the decimal.
+         * @return The fixed size of the schema.
+         * @throws IOException If the unscaled value doesn't fit in the fixed size.
+         */
+        private static int checkFixedSize(int length, Schema schema) throws IOException {
+            int size = schema.getFixedSize();
+            if (length > size) {
+                throw new IOException("Decimal value needs " + length + " bytes but fixed size is: " + size);
+            }
+            return size;
+        }
+
+        /**
+         * Returns this thread's scratch buffer, growing it if it is smaller than the requested size.
+         *
+         * @param size The minimum size of the buffer.
+         * @return A scratch buffer of at least the requested size.
+         */
+        private static byte[] scratch(int size) {
+            byte[] buffer = SCRATCH.get();
+            if (buffer.length < size) {
+                buffer = new byte[size];
+                SCRATCH.set(buffer);
+            }
+            return buffer;
+        }
     }
 
     /**
@@ -407,7 +1208,8 @@ public class AvroWriter {
     public static class TimestampMicrosWriter implements AvroWriter.LogicalTypeWriter {
         @Override
         public void write(Object value, Schema schema, Encoder out) throws IOException {
-            out.writeLong(((Instant) value).getEpochSecond() * 1_000_000 + ((Instant) value).getNano() / 1_000);
+            Instant instant = (Instant) value;
+            out.writeLong(instant.getEpochSecond() * 1_000_000L + instant.getNano() / 1_000);
         }
 
         @Override
@@ -423,7 +1225,8 @@ public class AvroWriter {
     public static class LocalTimestampMillisWriter implements AvroWriter.LogicalTypeWriter {
         @Override
         public void write(Object value, Schema schema, Encoder out) throws IOException {
-            out.writeLong(((LocalDateTime) value).toInstant(ZoneOffset.UTC).toEpochMilli());
+            LocalDateTime dateTime = (LocalDateTime) value;
+            out.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000L + dateTime.getNano() / 1_000_000);
         }
 
         @Override
@@ -1,19 +1,25 @@
 package dev.twister.avro;
 
 import junit.framework.TestCase;
+import org.apache.avro.LogicalTypes;
 import org.apache.avro.Schema;
 import org.apache.avro.SchemaBuilder;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 public class AvroSchemaInferrerTest extends TestCase {
     public void testSchemaInferrer() {
@@ -52,6 +58,187 @@ public class AvroSchemaInferrerTest extends TestCase {
         assertEquals(expectedSchema, schema.toString());
     }
 
+    public void testArrayWithMixedNumbers() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("array", Arrays.asList(1, 2.5, null));
+        Schema schema = new AvroSchemaInferrer().infer(map, "TestArray");
+        String expectedSchema = "{\"type\":\"record\",\"name\":\"TestArray\",\"fields\":[{\"name\":\"array\",\"type\":[\"null\",{\"type\":\"array\",\"items\":[\"null\",\"double\"]}]}]}";
+        assertEquals(expectedSchema, schema.toString());
+    }
+
+    public void testEmptyArray() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("array", List.of());
+        Schema schema = new AvroSchemaInferrer().infer(map, "TestArray");
+        String expectedSchema = "{\"type\":\"record\",\"name\":\"TestArray\",\"fields\":[{\"name\":\"array\",\"type\":[\"null\",{\"type\":\"array\",\"items\":\"null\"}]}]}";
+        assertEquals(expectedSchema, schema.toString());
+    }
+
+    public void testArrayOfRecordsWithDifferentFields() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("items", List.of(Map.of("a", 1), Map.of("a", 2L, "b", "x")));
+        Schema schema = new AvroSchemaInferrer().infer(map, "TestArray");
+
+        Schema itemSchema = schema.getField("items").schema().getTypes().get(1).getElementType().getTypes().get(1);
+        assertEquals("TestArray_items_items", itemSchema.getFullName());
+        assertEquals(SchemaBuilder.unionOf().nullType().and().longType().endUnion(), itemSchema.getField("a").schema());
+        assertEquals(SchemaBuilder.unionOf().nullType().and().stringType().endUnion(), itemSchema.getField("b").schema());
+    }
+
+    public void testInferMultipleRecords() {
+        Map<String, Object> first = new HashMap<>();
+        first.put("id", 1);
+        first.put("score", 10);
+        first.put("tags", List.of());
+        first.put("nested", Map.of("x", 1));
+
+        Map<String, Object> second = new HashMap<>();
+        second.put("id", 5_000_000_000L);
+        second.put("score", 9.5);
+        second.put("tags", List.of("a", "b"));
+        second.put("name", null);
+        second.put("nested", Map.of("x", 2, "y", true));
+
+        Map<String, Object> third = new HashMap<>();
+        third.put("name", "Alice");
+
+        Schema schema = new AvroSchemaInferrer().infer(List.of(first, second, third), "TestRecord");
+
+        Schema nestedSchema = SchemaBuilder.record("TestRecord_nested").fields()
+                .name("x").type(SchemaBuilder.unionOf().nullType().and().intType().endUnion()).noDefault()
+                .name("y").type(SchemaBuilder.unionOf().nullType().and().booleanType().endUnion()).noDefault()
+                .endRecord();
+        Schema expectedSchema = SchemaBuilder.record("TestRecord").fields()
+                .name("id").type(SchemaBuilder.unionOf().nullType().and().longType().endUnion()).noDefault()
+                .name("nested").type(SchemaBuilder.unionOf().nullType().and().type(nestedSchema).endUnion()).noDefault()
+                .name("score").type(SchemaBuilder.unionOf().nullType().and().doubleType().endUnion()).noDefault()
+                .name("tags").type(SchemaBuilder.unionOf().nullType().and().array()
+                        .items(SchemaBuilder.unionOf().nullType().and().stringType().endUnion()).endUnion()).noDefault()
+                .name("name").type(SchemaBuilder.unionOf().nullType().and().stringType().endUnion()).noDefault()
+                .endRecord();
+
+        assertEquals(expectedSchema, schema);
+    }
+
+    public void testInferMultipleRecordsMatchesMerge() {
+        List<Map<String, Object>> sample = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Map<String, Object> record = new HashMap<>();
+            record.put("id", i % 5 == 0 ? (Object) (long) i : (Object) i);
+            if (i % 3 != 0) {
+                record.put("name", "n" + i);
+            }
+            if (i > 100) {
+                record.put("late", i % 2 == 0 ? Map.of("x", i) : Map.of("y", "z"));
+            }
+            record.put("tags", i % 4 == 0 ? List.of() : List.of(i % 8 == 1 ? 1.5 : "t"));
+            sample.add(record);
+        }
+
+        AvroSchemaInferrer inferrer = new AvroSchemaInferrer();
+        Schema merged = null;
+        for (Map<String, Object> record : sample) {
+            Schema schema = inferrer.infer(record, "TestRecord");
+            merged = merged == null ? schema : inferrer.merge(merged, schema);
+        }
+        assertEquals(merged, inferrer.infer(sample, "TestRecord"));
+
+        // A sample whose records all have the same schema gives that schema.
+        List<Map<String, Object>> same = List.of(Map.of("id", 1), Map.of("id", 2));
+        assertEquals(inferrer.infer(Map.of("id", 3), "TestRecord"), inferrer.infer(same, "TestRecord"));
+    }
+
+    public void testInferParallel() {
+        List<Map<String, Object>> sample = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            Map<String, Object> record = new HashMap<>();
+            record.put("id", i % 7 == 0 ? (Object) (long) i : (Object) i);
+            record.put("value", i % 1_000 == 999 ? (Object) (i / 2.0) : (Object) i);
+            if (i % 3 == 0) {
+                record.put("tags", List.of("t" + i));
+            }
+            if (i == 12_345) {
+                record.put("late", Map.of("flag", true));
+            }
+            record.put("nested", i % 2 == 0 ? Map.of("a", i) : Map.of("b", "x"));
+            sample.add(record);
+        }
+
+        AvroSchemaInferrer inferrer = new AvroSchemaInferrer();
+        assertEquals(inferrer.infer(sample, "TestRecord"), inferrer.inferParallel(sample, "TestRecord"));
+    }
+
+    public void testInferParallelLargeList() {
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i < AvroSchemaInferrer.PARALLEL_LIST_THRESHOLD * 4; i++) {
+            values.add(i);
+        }
+        values.add(1L << 40);
+        Map<String, Object> map = new HashMap<>();
+        map.put("values", values);
+
+        AvroSchemaInferrer inferrer = new AvroSchemaInferrer();
+        Schema schema = inferrer.inferParallel(List.of(map), "TestRecord");
+
+        assertEquals(inferrer.infer(map, "TestRecord"), schema);
+        Schema itemSchema = schema.getField("values").schema().getTypes().get(1).getElementType();
+        assertEquals(SchemaBuilder.unionOf().nullType().and().longType().endUnion(), itemSchema);
+    }
+
+    public void testSharedSchemaInstances() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("first", "x");
+        map.put("second", "y");
+        map.put("items", List.of(Map.of("id", 1, "tags", List.of("a")), Map.of("id", 2, "tags", List.of("b"))));
+
+        AvroSchemaInferrer inferrer = new AvroSchemaInferrer();
+        Schema schema = inferrer.infer(map, "TestRecord");
+        Schema other = inferrer.infer(Map.of("first", "z"), "TestRecord");
+
+        assertSame(schema.getField("first").schema(), schema.getField("second").schema());
+
+        // Schemas are only shared within one call, so changing one result doesn't change the next.
+        assertNotSame(schema.getField("first").schema(), other.getField("first").schema());
+        schema.getField("first").schema().getTypes().get(1).addProp("avro.java.string", "String");
+        Schema later = inferrer.infer(Map.of("first", "z"), "TestRecord");
+        assertNull(later.getField("first").schema().getTypes().get(1).getProp("avro.java.string"));
+        assertEquals(other, later);
+
+        Schema itemSchema = schema.getField("items").schema().getTypes().get(1).getElementType().getTypes().get(1);
+        assertEquals(Arrays.asList("id", "tags"), itemSchema.getFields().stream().map(Schema.Field::name)
+                .collect(Collectors.toList()));
+    }
+
+    public void testInferEmptySample() {
+        try {
+            new AvroSchemaInferrer().infer(List.of(), "TestRecord");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testMerge() {
+        AvroSchemaInferrer inferrer = new AvroSchemaInferrer();
+        Schema intSchema = Schema.create(Schema.Type.INT);
+        Schema longSchema = Schema.create(Schema.Type.LONG);
+        Schema floatSchema = Schema.create(Schema.Type.FLOAT);
+        Schema doubleSchema = Schema.create(Schema.Type.DOUBLE);
+        Schema stringSchema = Schema.create(Schema.Type.STRING);
+
+        assertEquals(longSchema, inferrer.merge(intSchema, longSchema));
+        assertEquals(floatSchema, inferrer.merge(intSchema, floatSchema));
+        assertEquals(doubleSchema, inferrer.merge(longSchema, floatSchema));
+        assertEquals(doubleSchema, inferrer.merge(doubleSchema, intSchema));
+        assertEquals(Schema.createUnion(intSchema, stringSchema), inferrer.merge(intSchema, stringSchema));
+        assertEquals(Schema.createUnion(Schema.create(Schema.Type.NULL), longSchema),
+                inferrer.merge(Schema.create(Schema.Type.NULL), longSchema));
+
+        Schema leftDecimal = LogicalTypes.decimal(5, 2).addToSchema(Schema.create(Schema.Type.BYTES));
+        Schema rightDecimal = LogicalTypes.decimal(4, 4).addToSchema(Schema.create(Schema.Type.BYTES));
+        assertEquals(LogicalTypes.decimal(7, 4), inferrer.merge(leftDecimal, rightDecimal).getLogicalType());
+    }
+
     public void testNestedRecord() {
         AvroSchemaInferrer inferrer = new AvroSchemaInferrer();
         Map<String, Object> map = new HashMap<>();
@@ -182,4 +369,308 @@ public class AvroSchemaInferrerTest extends TestCase {
 
         assertEquals(expectedSchema, schema.toString());
     }
+
+    public void testInferFromClass() {
+        Schema schema = new AvroSchemaInferrer().infer(Order.class);
+
+        assertEquals(Schema.Type.RECORD, schema.getType());
+        assertEquals("AvroSchemaInferrerTest_Order", schema.getName());
+        assertEquals("dev.twister.avro", schema.getNamespace());
+        assertEquals(Arrays.asList("URL", "amount", "attributes", "id", "lines", "paid", "parent", "placedAt", "status"),
+                schema.getFields().stream().map(Schema.Field::name).collect(Collectors.toList()));
+
+        assertEquals(Schema.create(Schema.Type.LONG), schema.getField("id").schema());
+        assertEquals(Schema.create(Schema.Type.BOOLEAN), schema.getField("paid").schema());
+        assertEquals(Schema.createUnion(Schema.create(Schema.Type.NULL), Schema.create(Schema.Type.STRING)),
+                schema.getField("URL").schema());
+
+        Schema amount = schema.getField("amount").schema().getTypes().get(1);
+        assertEquals(LogicalTypes.decimal(AvroSchemaInferrer.DEFAULT_DECIMAL_PRECISION,
+                AvroSchemaInferrer.DEFAULT_DECIMAL_SCALE), amount.getLogicalType());
+        assertEquals("timestamp-millis",
+                schema.getField("placedAt").schema().getTypes().get(1).getLogicalType().getName());
+
+        Schema attributes = schema.getField("attributes").schema().getTypes().get(1);
+        assertEquals(Schema.Type.MAP, attributes.getType());
+        assertEquals(Schema.createUnion(Schema.create(Schema.Type.NULL), Schema.create(Schema.Type.INT)),
+                attributes.getValueType());
+
+        Schema status = schema.getField("status").schema().getTypes().get(1);
+        assertEquals(Schema.Type.ENUM, status.getType());
+        assertEquals("AvroSchemaInferrerTest_Status", status.getName());
+        assertEquals(Arrays.asList("OPEN", "SHIPPED"), status.getEnumSymbols());
+
+        Schema lines = schema.getField("lines").schema().getTypes().get(1);
+        assertEquals(Schema.Type.ARRAY, lines.getType());
+        Schema line = lines.getElementType().getTypes().get(1);
+        assertEquals("AvroSchemaInferrerTest_Line", line.getName());
+        assertEquals(Arrays.asList("quantity", "sku"),
+                line.getFields().stream().map(Schema.Field::name).collect(Collectors.toList()));
+
+        // Recursive classes refer back to their own record schema.
+        assertSame(schema, schema.getField("parent").schema().getTypes().get(1));
+    }
+
+    public void testInferFromClassIsCached() {
+        AvroSchemaInferrer inferrer = new AvroSchemaInferrer();
+        assertSame(inferrer.infer(Order.class), inferrer.infer(Order.class));
+    }
+
+    public void testInferFromClassesWithSameSimpleName() {
+        Schema schema = new AvroSchemaInferrer().infer(Shipment.class);
+
+        Schema from = schema.getField("from").schema().getTypes().get(1);
+        Schema to = schema.getField("to").schema().getTypes().get(1);
+        assertEquals("AvroSchemaInferrerTest_Origin_Address", from.getName());
+        assertEquals("AvroSchemaInferrerTest_Destination_Address", to.getName());
+        // Both records are defined in one schema, which only parses if their full names differ.
+        assertEquals(schema, new Schema.Parser().parse(schema.toString()));
+    }
+
+    public void testInferFromUnsupportedClass() {
+        AvroSchemaInferrer inferrer = new AvroSchemaInferrer();
+        try {
+            inferrer.infer(String.class);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            inferrer.infer(RawList.class);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        // JDK classes without a mapping are rejected instead of becoming empty records.
+        for (Class<?> type : Arrays.asList(CharacterHolder.class, BigIntegerHolder.class, DateHolder.class,
+                ObjectHolder.class, BigInteger.class)) {
+            try {
+                inferrer.infer(type);
+                fail("Expected IllegalArgumentException for " + type.getSimpleName());
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    public void testInferFromClassWithShorts() {
+        Schema schema = new AvroSchemaInferrer().infer(ShortHolder.class);
+
+        assertEquals(Schema.create(Schema.Type.INT), schema.getField("count").schema());
+        assertEquals(Schema.createUnion(Schema.create(Schema.Type.NULL), Schema.create(Schema.Type.INT)),
+                schema.getField("limit").schema());
+    }
+
+    public void testSchemaTracker() {
+        AvroSchemaInferrer inferrer = new AvroSchemaInferrer();
+        List<Integer> versions = new ArrayList<>();
+        AvroSchemaInferrer.SchemaTracker tracker = new AvroSchemaInferrer.SchemaTracker(inferrer, "TestRecord",
+                (schema, version) -> versions.add(version));
+        assertNull(tracker.getSchema());
+        assertEquals(0, tracker.getVersion());
+
+        Map<String, Object> first = new HashMap<>();
+        first.put("id", 1);
+        first.put("tags", Arrays.asList("a", "b"));
+        Map<String, Object> nested = new HashMap<>();
+        nested.put("amount", new BigDecimal("1.50"));
+        first.put("nested", nested);
+        assertFalse(tracker.fits(first));
+        assertTrue(tracker.observe(first));
+        assertEquals(1, tracker.getVersion());
+        Schema firstSchema = tracker.getSchema();
+        assertEquals(inferrer.infer(first, "TestRecord"), firstSchema);
+
+        // Same shape, a missing field and a narrower decimal all fit without changing the schema.
+        Map<String, Object> same = new HashMap<>();
+        same.put("id", 2);
+        same.put("tags", new ArrayList<>());
+        Map<String, Object> sameNested = new HashMap<>();
+        sameNested.put("amount", new BigDecimal("2.5"));
+        same.put("nested", sameNested);
+        assertTrue(tracker.fits(same));
+        assertFalse(tracker.observe(same));
+        assertSame(firstSchema, tracker.getSchema());
+        assertFalse(tracker.observe(Map.of("id", 3)));
+        assertEquals(1, tracker.getVersion());
+
+        // A wider number and a new field each change the schema.
+        Map<String, Object> widened = new HashMap<>();
+        widened.put("id", 4L);
+        assertFalse(tracker.fits(widened));
+        assertTrue(tracker.observe(widened));
+        assertEquals(Schema.createUnion(Schema.create(Schema.Type.NULL), Schema.create(Schema.Type.LONG)),
+                tracker.getSchema().getField("id").schema());
+        assertTrue(tracker.observe(Map.of("name", "x")));
+        assertNotNull(tracker.getSchema().getField("name"));
+        assertTrue(tracker.fits(Map.of("id", 5, "name", "y")));
+
+        assertEquals(3, tracker.getVersion());
+        assertEquals(Arrays.asList(1, 2, 3), versions);
+    }
+
+    public void testSchemaTrackerLogicalTypes() {
+        // The UUID inferrer here reads the value, so the schema inferred for each UUID is compared in full.
+        Map<Class<?>, AvroSchemaInferrer.LogicalTypeInferrer<?>> inferrers =
+                new HashMap<>(AvroSchemaInferrer.mapOfDefaultInferrers(TimeUnit.MILLISECONDS));
+        inferrers.put(UUID.class, (AvroSchemaInferrer.LogicalTypeInferrer<UUID>) value ->
+                LogicalTypes.uuid().addToSchema(Schema.create(value.version() > 0
+                        ? Schema.Type.STRING
+                        : Schema.Type.NULL)));
+        AvroSchemaInferrer inferrer = new AvroSchemaInferrer(inferrers, true);
+        AvroSchemaInferrer.SchemaTracker tracker = new AvroSchemaInferrer.SchemaTracker(inferrer, "TestRecord",
+                (schema, version) -> { });
+
+        assertTrue(tracker.observe(Map.of("at", Instant.EPOCH, "day", LocalDate.EPOCH, "id", UUID.randomUUID())));
+        assertTrue(tracker.fits(Map.of("at", Instant.now(), "day", LocalDate.now(), "id", UUID.randomUUID())));
+        assertFalse(tracker.fits(Map.of("at", LocalDate.now())));
+        assertFalse(tracker.fits(Map.of("day", LocalTime.NOON)));
+        assertFalse(tracker.fits(Map.of("day", 1)));
+        assertFalse(tracker.fits(Map.of("id", "not-a-uuid")));
+    }
+
+    public void testSchemaTrackerParameterizedLogicalTypes() {
+        // A fixed decimal sized from each value's precision, so the schema depends on more than the value's class.
+        Map<Class<?>, AvroSchemaInferrer.LogicalTypeInferrer<?>> inferrers =
+                new HashMap<>(AvroSchemaInferrer.mapOfDefaultInferrers(TimeUnit.MILLISECONDS));
+        inferrers.put(BigDecimal.class, (AvroSchemaInferrer.LogicalTypeInferrer<BigDecimal>) value -> {
+            int precision = value == null ? 10 : value.precision();
+            int scale = value == null ? 2 : value.scale();
+            return LogicalTypes.decimal(precision, scale).addToSchema(
+                    Schema.createFixed("Amount" + precision, null, null, precision));
+        });
+        AvroSchemaInferrer inferrer = new AvroSchemaInferrer(inferrers, true);
+        AvroSchemaInferrer.SchemaTracker tracker = new AvroSchemaInferrer.SchemaTracker(inferrer, "TestRecord",
+                (schema, version) -> { });
+
+        assertTrue(tracker.observe(Map.of("amount", new BigDecimal("1.5"))));
+        assertTrue(tracker.fits(Map.of("amount", new BigDecimal("2.5"))));
+        assertFalse(tracker.fits(Map.of("amount", new BigDecimal("12.5"))));
+        assertFalse(tracker.fits(Map.of("amount", new BigDecimal("1.25"))));
+    }
+
+    public enum Status { OPEN, SHIPPED }
+
+    public static class Order {
+        public long getId() {
+            return 0;
+        }
+
+        public boolean isPaid() {
+            return false;
+        }
+
+        public String getURL() {
+            return null;
+        }
+
+        public BigDecimal getAmount() {
+            return null;
+        }
+
+        public Instant getPlacedAt() {
+            return null;
+        }
+
+        public Map<String, Integer> getAttributes() {
+            return null;
+        }
+
+        public Status getStatus() {
+            return null;
+        }
+
+        public List<Line> getLines() {
+            return null;
+        }
+
+        public Order getParent() {
+            return null;
+        }
+
+        public static Order getDefault() {
+            return null;
+        }
+
+        public String describe() {
+            return null;
+        }
+    }
+
+    public static class Line {
+        public String getSku() {
+            return null;
+        }
+
+        public int getQuantity() {
+            return 0;
+        }
+    }
+
+    public static class Shipment {
+        public Origin.Address getFrom() {
+            return null;
+        }
+
+        public Destination.Address getTo() {
+            return null;
+        }
+    }
+
+    public static class Origin {
+        public static class Address {
+            public String getWarehouse() {
+                return null;
+            }
+        }
+    }
+
+    public static class Destination {
+        public static class Address {
+            public String getStreet() {
+                return null;
+            }
+        }
+    }
+
+    public static class ShortHolder {
+        public short getCount() {
+            return 0;
+        }
+
+        public Short getLimit() {
+            return null;
+        }
+    }
+
+    public static class CharacterHolder {
+        public Character getInitial() {
+            return null;
+        }
+    }
+
+    public static class BigIntegerHolder {
+        public BigInteger getValue() {
+            return null;
+        }
+    }
+
+    public static class DateHolder {
+        public Date getCreated() {
+            return null;
+        }
+    }
+
+    public static class ObjectHolder {
+        public Object getValue() {
+            return null;
+        }
+    }
+
+    public static class RawList {
+        @SuppressWarnings("rawtypes")
+        public List getItems() {
+            return null;
+        }
+    }
 }
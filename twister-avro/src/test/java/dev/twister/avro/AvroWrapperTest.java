@@ -4,9 +4,13 @@ import junit.framework.TestCase;
 import org.apache.avro.Conversions;
 import org.apache.avro.LogicalTypes;
 import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.generic.GenericRecordBuilder;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.specific.AvroGenerated;
+import org.apache.avro.specific.SpecificRecordBase;
 
 import java.math.BigDecimal;
 import java.nio.ByteBuffer;
@@ -121,6 +125,62 @@ public class AvroWrapperTest extends TestCase {
         assertEquals("a string", result.get("testUnion"));
     }
 
+    public void testWrapNullableUnion() {
+        Schema uuidSchema = LogicalTypes.uuid().addToSchema(Schema.create(Schema.Type.STRING));
+        Schema nullableUuid = Schema.createUnion(Schema.create(Schema.Type.NULL), uuidSchema);
+        Schema recordSchema = Schema.createRecord("TestRecord", "", "", false);
+        recordSchema.setFields(Arrays.asList(
+                new Schema.Field("set", nullableUuid, "", null),
+                new Schema.Field("unset", nullableUuid, "", null)));
+
+        UUID uuid = UUID.randomUUID();
+        GenericRecord record = new GenericData.Record(recordSchema);
+        record.put("set", uuid.toString());
+
+        Map<String, Object> result = new AvroWrapper().wrap(record);
+
+        assertEquals(uuid, result.get("set"));
+        assertNull(result.get("unset"));
+    }
+
+    public void testWrapMultiBranchUnion() {
+        Schema first = Schema.createRecord("First", "", "", false);
+        first.setFields(Collections.singletonList(new Schema.Field("a", Schema.create(Schema.Type.INT), "", null)));
+        Schema second = Schema.createRecord("Second", "", "", false);
+        second.setFields(Collections.singletonList(new Schema.Field("b", Schema.create(Schema.Type.INT), "", null)));
+        Schema dateSchema = LogicalTypes.date().addToSchema(Schema.create(Schema.Type.INT));
+        Schema unionSchema = Schema.createUnion(Schema.create(Schema.Type.NULL), dateSchema,
+                Schema.create(Schema.Type.STRING), first, second);
+        Schema recordSchema = Schema.createRecord("TestRecord", "", "", false);
+        recordSchema.setFields(Arrays.asList(
+                new Schema.Field("date", unionSchema, "", null),
+                new Schema.Field("string", unionSchema, "", null),
+                new Schema.Field("first", unionSchema, "", null),
+                new Schema.Field("second", unionSchema, "", null),
+                new Schema.Field("null", unionSchema, "", null)));
+
+        GenericRecord firstRecord = new GenericData.Record(first);
+        firstRecord.put("a", 1);
+        GenericRecord secondRecord = new GenericData.Record(second);
+        secondRecord.put("b", 2);
+        GenericRecord record = new GenericData.Record(recordSchema);
+        record.put("date", 19000);
+        record.put("string", "text");
+        record.put("first", firstRecord);
+        record.put("second", secondRecord);
+
+        Map<String, Object> result = new AvroWrapper().wrap(record);
+
+        // Read twice, so the second read goes through the compiled branch table.
+        for (int i = 0; i < 2; i++) {
+            assertEquals(LocalDate.ofEpochDay(19000), result.get("date"));
+            assertEquals("text", result.get("string"));
+            assertEquals(Map.of("a", 1), result.get("first"));
+            assertEquals(Map.of("b", 2), result.get("second"));
+            assertNull(result.get("null"));
+        }
+    }
+
     public void testWrapEnum() {
         Schema enumSchema = Schema.createEnum("TestEnum", "", "", Arrays.asList("A", "B", "C"));
         GenericData.EnumSymbol enumSymbol = new GenericData.EnumSymbol(enumSchema, "B");
@@ -327,4 +387,431 @@ public class AvroWrapperTest extends TestCase {
 
         assertEquals(decimalValue, result.get("testDecimal"));
     }
+
+    public void testWrapLogicalDecimalBytes() {
+        LogicalTypes.Decimal decimalLogicalType = LogicalTypes.decimal(40, 4);
+        Schema decimalSchema = decimalLogicalType.addToSchema(Schema.create(Schema.Type.BYTES));
+        Schema recordSchema = Schema.createRecord("TestRecord", "", "", false);
+        recordSchema.setFields(Arrays.asList(
+                new Schema.Field("small", decimalSchema, "", null),
+                new Schema.Field("negative", decimalSchema, "", null),
+                new Schema.Field("large", decimalSchema, "", null),
+                new Schema.Field("direct", decimalSchema, "", null)));
+
+        Conversions.DecimalConversion conversion = new Conversions.DecimalConversion();
+        BigDecimal small = new BigDecimal("12345.6789");
+        BigDecimal negative = new BigDecimal("-0.0001");
+        BigDecimal large = new BigDecimal("-123456789012345678901234567890.1234");
+        ByteBuffer largeBytes = conversion.toBytes(large, decimalSchema, decimalLogicalType);
+        ByteBuffer direct = ByteBuffer.allocateDirect(largeBytes.remaining());
+        direct.put(largeBytes.duplicate()).flip();
+
+        GenericRecord record = new GenericData.Record(recordSchema);
+        record.put("small", conversion.toBytes(small, decimalSchema, decimalLogicalType));
+        record.put("negative", conversion.toBytes(negative, decimalSchema, decimalLogicalType));
+        record.put("large", largeBytes);
+        record.put("direct", direct);
+
+        Map<String, Object> result = new AvroWrapper().wrap(record);
+
+        assertEquals(small, result.get("small"));
+        assertEquals(negative, result.get("negative"));
+        assertEquals(large, result.get("large"));
+        assertEquals(large, result.get("direct"));
+        assertEquals(0, direct.position());
+    }
+
+    public void testWrapBytesAreReadOnly() {
+        Schema fixedSchema = Schema.createFixed("TestFixed", "", "", 2);
+        Schema recordSchema = Schema.createRecord("TestRecord", "", "", false);
+        recordSchema.setFields(Arrays.asList(
+                new Schema.Field("fixed", fixedSchema, "", null),
+                new Schema.Field("bytes", Schema.create(Schema.Type.BYTES), "", null)));
+
+        ByteBuffer bytes = ByteBuffer.wrap(new byte[] {3, 4});
+        GenericRecord record = new GenericData.Record(recordSchema);
+        record.put("fixed", new GenericData.Fixed(fixedSchema, new byte[] {1, 2}));
+        record.put("bytes", bytes);
+
+        Map<String, Object> result = new AvroWrapper().wrap(record);
+        ByteBuffer fixedResult = (ByteBuffer) result.get("fixed");
+        ByteBuffer bytesResult = (ByteBuffer) result.get("bytes");
+
+        assertTrue(fixedResult.isReadOnly());
+        assertTrue(bytesResult.isReadOnly());
+        assertEquals(ByteBuffer.wrap(new byte[] {1, 2}), fixedResult);
+        bytesResult.get();
+        assertEquals(0, bytes.position());
+    }
+
+    public void testKeyedAccess() {
+        Schema uuidSchema = LogicalTypes.uuid().addToSchema(Schema.create(Schema.Type.STRING));
+        Schema recordSchema = Schema.createRecord("TestRecord", "", "", false);
+        recordSchema.setFields(Arrays.asList(
+                new Schema.Field("first", uuidSchema, "", null),
+                new Schema.Field("second", uuidSchema, "", null),
+                new Schema.Field("third", uuidSchema, "", null)));
+
+        UUID uuid = UUID.randomUUID();
+        GenericRecord record = new GenericData.Record(recordSchema);
+        record.put("first", UUID.randomUUID().toString());
+        record.put("second", uuid.toString());
+        record.put("third", UUID.randomUUID().toString());
+
+        int[] conversions = new int[1];
+        Map<String, AvroWrapper.LogicalTypeConverter> converters = new HashMap<>(
+                AvroWrapper.DEFAULT_LOGICAL_TYPE_CONVERTERS);
+        converters.put("uuid", value -> {
+            conversions[0]++;
+            return UUID.fromString((String) value);
+        });
+        Map<String, Object> result = new AvroWrapper(converters).wrap(record);
+
+        assertEquals(uuid, result.get("second"));
+        assertEquals(1, conversions[0]);
+        assertTrue(result.containsKey("third"));
+        assertFalse(result.containsKey("fourth"));
+        assertFalse(result.containsKey(1));
+        assertNull(result.get("fourth"));
+        assertNull(result.get(1));
+        assertEquals(1, conversions[0]);
+        assertEquals(3, result.size());
+    }
+
+    public void testMemoizedWrap() {
+        Schema uuidSchema = LogicalTypes.uuid().addToSchema(Schema.create(Schema.Type.STRING));
+        Schema nestedSchema = Schema.createRecord("Nested", "", "", false);
+        nestedSchema.setFields(Collections.singletonList(new Schema.Field("id", uuidSchema, "", null)));
+        Schema recordSchema = Schema.createRecord("TestRecord", "", "", false);
+        recordSchema.setFields(Arrays.asList(
+                new Schema.Field("id", uuidSchema, "", null),
+                new Schema.Field("nested", nestedSchema, "", null),
+                new Schema.Field("list", Schema.createArray(nestedSchema), "", null),
+                new Schema.Field("map", Schema.createMap(nestedSchema), "", null),
+                new Schema.Field("empty", Schema.create(Schema.Type.NULL), "", null)));
+
+        UUID uuid = UUID.randomUUID();
+        GenericRecord nested = new GenericData.Record(nestedSchema);
+        nested.put("id", uuid.toString());
+        GenericRecord record = new GenericData.Record(recordSchema);
+        record.put("id", uuid.toString());
+        record.put("nested", nested);
+        record.put("list", Collections.singletonList(nested));
+        record.put("map", Collections.singletonMap("key", nested));
+
+        int[] conversions = new int[1];
+        Map<String, AvroWrapper.LogicalTypeConverter> converters = new HashMap<>(
+                AvroWrapper.DEFAULT_LOGICAL_TYPE_CONVERTERS);
+        converters.put("uuid", value -> {
+            conversions[0]++;
+            return UUID.fromString((String) value);
+        });
+        Map<String, Object> result = new AvroWrapper(converters, true).wrap(record);
+
+        assertEquals(uuid, result.get("id"));
+        assertSame(result.get("id"), result.get("id"));
+        assertEquals(1, conversions[0]);
+        assertSame(result.get("nested"), result.get("nested"));
+        List<Object> list = (List<Object>) result.get("list");
+        assertSame(list, result.get("list"));
+        assertSame(list.get(0), list.get(0));
+        Map<String, Object> map = (Map<String, Object>) result.get("map");
+        assertSame(map.values().iterator().next(), map.values().iterator().next());
+        assertNull(result.get("empty"));
+        assertNull(result.get("empty"));
+
+        assertEquals(new AvroWrapper().wrap(record), result);
+    }
+
+    public void testMutableFacade() {
+        Schema uuidSchema = LogicalTypes.uuid().addToSchema(Schema.create(Schema.Type.STRING));
+        Schema nestedSchema = Schema.createRecord("Nested", "", "", false);
+        nestedSchema.setFields(Collections.singletonList(
+                new Schema.Field("count", Schema.create(Schema.Type.INT), "", null)));
+        Schema enumSchema = Schema.createEnum("Color", "", "", Arrays.asList("RED", "GREEN"));
+        Schema recordSchema = Schema.createRecord("TestRecord", "", "", false);
+        recordSchema.setFields(Arrays.asList(
+                new Schema.Field("id", uuidSchema, "", null),
+                new Schema.Field("name", Schema.create(Schema.Type.STRING), "", null),
+                new Schema.Field("color", enumSchema, "", null),
+                new Schema.Field("nested", Schema.createUnion(Schema.create(Schema.Type.NULL), nestedSchema), "", null),
+                new Schema.Field("tags", Schema.createArray(Schema.create(Schema.Type.STRING)), "", null)));
+
+        UUID uuid = UUID.randomUUID();
+        GenericRecord record = new GenericData.Record(recordSchema);
+        record.put("id", uuid.toString());
+        record.put("name", "before");
+        record.put("color", new GenericData.EnumSymbol(enumSchema, "RED"));
+        record.put("nested", null);
+        record.put("tags", Arrays.asList("a", "b"));
+
+        AvroWrapper.MutableFacade facade = new AvroWrapper().wrapMutable(record);
+        UUID newUuid = UUID.randomUUID();
+        assertEquals("before", facade.put("name", "after"));
+        assertEquals(uuid, facade.put("id", newUuid));
+        facade.put("color", "GREEN");
+        facade.put("nested", Map.of("count", 3));
+
+        assertEquals("after", facade.get("name"));
+        assertEquals(newUuid, facade.get("id"));
+        assertEquals(Arrays.asList("a", "b"), facade.get("tags"));
+        assertTrue(facade.isOverridden(1));
+        assertFalse(facade.isOverridden(4));
+        assertEquals("before", record.get("name"));
+        assertSame(record, facade.getRecord());
+
+        try {
+            facade.put("missing", 1);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        IndexedRecord result = facade.toIndexedRecord();
+        assertEquals(newUuid.toString(), result.get(0).toString());
+        assertEquals("after", result.get(1));
+        assertEquals(new GenericData.EnumSymbol(enumSchema, "GREEN"), result.get(2));
+        assertEquals(3, ((IndexedRecord) result.get(3)).get(0));
+        assertSame(record.get(4), result.get(4));
+        assertTrue(GenericData.get().validate(recordSchema, result));
+
+        Map<String, Object> expected = new HashMap<>(new AvroWrapper().wrap(result));
+        assertEquals(expected, new HashMap<>(facade));
+    }
+
+    public void testMutableFacadeNullableEnumAndFixed() {
+        Schema enumSchema = Schema.createEnum("E", "", "", Arrays.asList("A", "B"));
+        Schema fixedSchema = Schema.createFixed("F", "", "", 2);
+        Schema recordSchema = Schema.createRecord("NullableRecord", "", "", false);
+        recordSchema.setFields(Arrays.asList(
+                new Schema.Field("e", Schema.createUnion(Schema.create(Schema.Type.NULL), enumSchema), "", null),
+                new Schema.Field("f", Schema.createUnion(Schema.create(Schema.Type.NULL), fixedSchema), "", null)));
+
+        GenericRecord record = new GenericData.Record(recordSchema);
+        record.put("e", new GenericData.EnumSymbol(enumSchema, "B"));
+        record.put("f", new GenericData.Fixed(fixedSchema, new byte[]{1, 2}));
+
+        // The String and ByteBuffer the facade hands out can be put straight back.
+        AvroWrapper.MutableFacade facade = new AvroWrapper().wrapMutable(record);
+        facade.put("e", facade.get("e"));
+        facade.put("f", facade.get("f"));
+
+        IndexedRecord result = facade.toIndexedRecord();
+        assertEquals(new GenericData.EnumSymbol(enumSchema, "B"), result.get(0));
+        assertEquals(new GenericData.Fixed(fixedSchema, new byte[]{1, 2}), result.get(1));
+        assertTrue(GenericData.get().validate(recordSchema, result));
+    }
+
+    public void testMutableFacadeMultiBranchUnion() {
+        Schema enumSchema = Schema.createEnum("E", "", "", Arrays.asList("A", "B"));
+        Schema fixedSchema = Schema.createFixed("F", "", "", 2);
+        Schema recordSchema = Schema.createRecord("UnionRecord", "", "", false);
+        recordSchema.setFields(Arrays.asList(
+                new Schema.Field("e", Schema.createUnion(Schema.create(Schema.Type.NULL),
+                        Schema.create(Schema.Type.INT), enumSchema), "", null),
+                new Schema.Field("f", Schema.createUnion(Schema.create(Schema.Type.NULL),
+                        Schema.create(Schema.Type.STRING), fixedSchema), "", null),
+                new Schema.Field("s", Schema.createUnion(Schema.create(Schema.Type.STRING), enumSchema), "", null)));
+
+        GenericRecord record = new GenericData.Record(recordSchema);
+        record.put("e", new GenericData.EnumSymbol(enumSchema, "A"));
+        record.put("f", new GenericData.Fixed(fixedSchema, new byte[]{3, 4}));
+        record.put("s", "A");
+
+        AvroWrapper.MutableFacade facade = new AvroWrapper().wrapMutable(record);
+        facade.put("e", facade.get("e"));
+        facade.put("f", facade.get("f"));
+        facade.put("s", facade.get("s"));
+
+        IndexedRecord result = facade.toIndexedRecord();
+        assertEquals(new GenericData.EnumSymbol(enumSchema, "A"), result.get(0));
+        assertEquals(new GenericData.Fixed(fixedSchema, new byte[]{3, 4}), result.get(1));
+        // A String matches the string branch before the enum branch that has it as a symbol.
+        assertEquals("A", result.get(2));
+        assertTrue(GenericData.get().validate(recordSchema, result));
+
+        facade.put("e", 1.5);
+        try {
+            facade.toIndexedRecord();
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testWrapSpecificRecord() {
+        TestUser user = new TestUser();
+        user.put(0, "ada");
+        user.put(1, 36);
+        user.put(2, "v1");
+
+        Map<String, Object> result = new AvroWrapper().wrap(user);
+
+        assertEquals("ada", result.get("user_name"));
+        assertEquals(36, result.get("age"));
+        assertEquals("v1", result.get("schema"));
+        assertEquals(Map.of("user_name", "ada", "age", 36, "schema", "v1"), new HashMap<>(result));
+        assertEquals(0, user.positionalReads);
+    }
+
+    public void testWrapSpecificRecordWithConflictingFieldNames() {
+        TestConflict conflict = new TestConflict();
+        conflict.put(0, 1);
+        conflict.put(1, "one");
+
+        Map<String, Object> result = new AvroWrapper().wrap(conflict);
+
+        assertEquals(1, result.get("value"));
+        assertEquals("one", result.get("Value"));
+        assertEquals(0, conflict.positionalReads);
+    }
+
+    public void testWrapHandWrittenSpecificRecord() {
+        HandWrittenUser user = new HandWrittenUser();
+        user.put(0, "ada");
+
+        // Getters of classes Avro didn't generate aren't trusted to return what get(int) does.
+        assertEquals("ada", new AvroWrapper().wrap(user).get("user_name"));
+    }
+
+    /**
+     * A record class shaped like the classes Avro's code generator produces.
+     */
+    @AvroGenerated
+    public static class TestUser extends SpecificRecordBase {
+        public static final Schema SCHEMA$ = SchemaBuilder.record("TestUser").namespace("dev.twister.avro")
+                .fields()
+                .requiredString("user_name")
+                .requiredInt("age")
+                .requiredString("schema")
+                .endRecord();
+
+        private String userName;
+        private int age;
+        private String schema;
+        private int positionalReads;
+
+        @Override
+        public Schema getSchema() {
+            return SCHEMA$;
+        }
+
+        @Override
+        public Object get(int field) {
+            positionalReads++;
+            switch (field) {
+                case 0: return userName;
+                case 1: return age;
+                case 2: return schema;
+                default: throw new IndexOutOfBoundsException("Invalid index: " + field);
+            }
+        }
+
+        @Override
+        public void put(int field, Object value) {
+            switch (field) {
+                case 0: userName = (String) value; break;
+                case 1: age = (Integer) value; break;
+                case 2: schema = (String) value; break;
+                default: throw new IndexOutOfBoundsException("Invalid index: " + field);
+            }
+        }
+
+        public String getUserName() {
+            return userName;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public String getSchema$() {
+            return schema;
+        }
+    }
+
+    /**
+     * A generated-style record with two fields whose names differ only in the case of their first letter.
+     */
+    @AvroGenerated
+    public static class TestConflict extends SpecificRecordBase {
+        public static final Schema SCHEMA$ = SchemaBuilder.record("TestConflict").namespace("dev.twister.avro")
+                .fields()
+                .requiredInt("value")
+                .requiredString("Value")
+                .endRecord();
+
+        private int lowerValue;
+        private String upperValue;
+        private int positionalReads;
+
+        @Override
+        public Schema getSchema() {
+            return SCHEMA$;
+        }
+
+        @Override
+        public Object get(int field) {
+            positionalReads++;
+            switch (field) {
+                case 0: return lowerValue;
+                case 1: return upperValue;
+                default: throw new IndexOutOfBoundsException("Invalid index: " + field);
+            }
+        }
+
+        @Override
+        public void put(int field, Object value) {
+            switch (field) {
+                case 0: lowerValue = (Integer) value; break;
+                case 1: upperValue = (String) value; break;
+                default: throw new IndexOutOfBoundsException("Invalid index: " + field);
+            }
+        }
+
+        public int getValue$0() {
+            return lowerValue;
+        }
+
+        public String getValue$1() {
+            return upperValue;
+        }
+    }
+
+    /**
+     * A hand-written record class whose getter doesn't return the value get(int) does.
+     */
+    public static class HandWrittenUser extends SpecificRecordBase {
+        public static final Schema SCHEMA$ = SchemaBuilder.record("HandWrittenUser").namespace("dev.twister.avro")
+                .fields()
+                .requiredString("user_name")
+                .endRecord();
+
+        private String userName;
+
+        @Override
+        public Schema getSchema() {
+            return SCHEMA$;
+        }
+
+        @Override
+        public Object get(int field) {
+            if (field != 0) {
+                throw new IndexOutOfBoundsException("Invalid index: " + field);
+            }
+            return userName;
+        }
+
+        @Override
+        public void put(int field, Object value) {
+            if (field != 0) {
+                throw new IndexOutOfBoundsException("Invalid index: " + field);
+            }
+            userName = (String) value;
+        }
+
+        public String getUserName() {
+            return userName.toUpperCase();
+        }
+    }
 }
@@ -1,17 +1,32 @@
 package dev.twister.avro;
 
 import junit.framework.TestCase;
+import org.apache.avro.Conversion;
+import org.apache.avro.Conversions;
+import org.apache.avro.LogicalTypes;
 import org.apache.avro.Schema;
 import org.apache.avro.SchemaBuilder;
+import org.apache.avro.data.TimeConversions;
+import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericFixed;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.DatumReader;
 import org.apache.avro.io.Decoder;
 import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.Encoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificData;
 import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.avro.util.Utf8;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
@@ -19,6 +34,9 @@ import java.time.*;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalUnit;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 public class AvroWriterTest extends TestCase {
@@ -267,6 +285,414 @@ public class AvroWriterTest extends TestCase {
         assertEquals(new BigDecimal("12.34"), decodedDecimal);
     }
 
+    public void testDecimalRescale() throws Exception {
+        Schema decimalSchema = LogicalTypes.decimal(6, 3).addToSchema(Schema.create(Schema.Type.BYTES));
+        Schema schema = SchemaBuilder.record("TestRecord").fields()
+                .name("decimalField").type(decimalSchema).noDefault()
+                .endRecord();
+
+        Map<String, Object> recordMap = new HashMap<>();
+        recordMap.put("decimalField", new BigDecimal("-12.3"));
+
+        ByteBuffer byteBuffer = new AvroWriter().write(recordMap, schema);
+        Map<String, Object> resultMap = new AvroReader().read(byteBuffer, schema);
+
+        assertEquals(new BigDecimal("-12.300"), resultMap.get("decimalField"));
+    }
+
+    public void testDecimalRescaleWouldRound() {
+        Schema decimalSchema = LogicalTypes.decimal(6, 1).addToSchema(Schema.create(Schema.Type.BYTES));
+        Schema schema = SchemaBuilder.record("TestRecord").fields()
+                .name("decimalField").type(decimalSchema).noDefault()
+                .endRecord();
+
+        Map<String, Object> recordMap = new HashMap<>();
+        recordMap.put("decimalField", new BigDecimal("12.34"));
+
+        try {
+            new AvroWriter().write(recordMap, schema);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    public void testDecimalExceedsPrecision() {
+        Schema decimalSchema = LogicalTypes.decimal(4, 2).addToSchema(Schema.create(Schema.Type.BYTES));
+        Schema schema = SchemaBuilder.record("TestRecord").fields()
+                .name("decimalField").type(decimalSchema).noDefault()
+                .endRecord();
+
+        Map<String, Object> recordMap = new HashMap<>();
+        recordMap.put("decimalField", new BigDecimal("123.45"));
+
+        try {
+            new AvroWriter().write(recordMap, schema);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    public void testFixedDecimal() throws Exception {
+        LogicalTypes.Decimal decimalType = LogicalTypes.decimal(30, 4);
+        Schema decimalSchema = decimalType.addToSchema(Schema.createFixed("TestDecimal", null, null, 16));
+        Schema schema = SchemaBuilder.record("TestRecord").fields()
+                .name("smallField").type(decimalSchema).noDefault()
+                .name("negativeField").type(decimalSchema).noDefault()
+                .name("largeField").type(decimalSchema).noDefault()
+                .endRecord();
+
+        Map<String, Object> recordMap = new HashMap<>();
+        recordMap.put("smallField", new BigDecimal("1234.5678"));
+        recordMap.put("negativeField", new BigDecimal("-0.0001"));
+        recordMap.put("largeField", new BigDecimal("-12345678901234567890.1234"));
+
+        ByteBuffer byteBuffer = new AvroWriter().write(recordMap, schema);
+
+        GenericDatumReader<GenericRecord> datumReader = new GenericDatumReader<>(schema);
+        Decoder decoder = DecoderFactory.get().binaryDecoder(byteBuffer.array(), null);
+        GenericRecord genericRecord = datumReader.read(null, decoder);
+
+        Conversions.DecimalConversion conversion = new Conversions.DecimalConversion();
+        for (String field : recordMap.keySet()) {
+            GenericFixed fixed = (GenericFixed) genericRecord.get(field);
+            assertEquals(recordMap.get(field), conversion.fromFixed(fixed, decimalSchema, decimalType));
+        }
+
+        assertEquals(recordMap, new AvroReader().read(byteBuffer, schema));
+    }
+
+    public void testLargeDecimal() throws Exception {
+        Schema decimalSchema = LogicalTypes.decimal(40, 2).addToSchema(Schema.create(Schema.Type.BYTES));
+        Schema schema = SchemaBuilder.record("TestRecord").fields()
+                .name("decimalField").type(decimalSchema).noDefault()
+                .endRecord();
+
+        Map<String, Object> recordMap = new HashMap<>();
+        recordMap.put("decimalField", new BigDecimal("98765432109876543210987654321.99"));
+
+        ByteBuffer byteBuffer = new AvroWriter().write(recordMap, schema);
+
+        assertEquals(recordMap, new AvroReader().read(byteBuffer, schema));
+    }
+
+    public void testStringCache() throws Exception {
+        Schema schema = SchemaBuilder.record("TestRecord").fields()
+                .name("attributes").type().map().values().stringType().noDefault()
+                .name("country").type().stringType().noDefault()
+                .name("comment").type().stringType().noDefault()
+                .endRecord();
+
+        AvroWriter.StringCache cache = new AvroWriter.StringCache(2, Set.of("country"));
+        AvroWriter writer = new AvroWriter(AvroWriter.DEFAULT_LOGICAL_TYPE_WRITERS, cache);
+
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("color", "red");
+        attributes.put("size", "large");
+        attributes.put("shape", "round");
+        Map<String, Object> recordMap = new HashMap<>();
+        recordMap.put("attributes", attributes);
+        recordMap.put("country", "NL");
+        recordMap.put("comment", "not cached");
+
+        ByteBuffer first = writer.write(recordMap, schema);
+        assertEquals(0, cache.getHits());
+        assertEquals(4, cache.getMisses());
+        assertEquals(2, cache.size());
+
+        ByteBuffer second = writer.write(recordMap, schema);
+        assertEquals(2, cache.getHits());
+        assertEquals(6, cache.getMisses());
+        assertEquals(first, second);
+        assertEquals(new AvroWriter().write(recordMap, schema), second);
+
+        Map<String, Object> resultMap = new AvroReader().read(second, schema);
+        assertEquals(attributes, resultMap.get("attributes"));
+        assertEquals("NL", resultMap.get("country"));
+    }
+
+    public void testConcurrentWriteAndRead() throws Exception {
+        Schema decimalSchema = LogicalTypes.decimal(12, 2).addToSchema(Schema.create(Schema.Type.BYTES));
+        Schema schema = SchemaBuilder.record("TestRecord").fields()
+                .name("id").type().longType().noDefault()
+                .name("name").type().stringType().noDefault()
+                .name("amount").type(decimalSchema).noDefault()
+                .name("tags").type().map().values().stringType().noDefault()
+                .name("nested").type().record("Nested").fields()
+                    .name("values").type().array().items().intType().noDefault()
+                    .endRecord().noDefault()
+                .endRecord();
+
+        AvroWriter writer = new AvroWriter(AvroWriter.DEFAULT_LOGICAL_TYPE_WRITERS, new AvroWriter.StringCache(16));
+        AvroReader reader = new AvroReader();
+        int threads = 8;
+        int recordsPerThread = 2_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    int verified = 0;
+                    for (int i = 0; i < recordsPerThread; i++) {
+                        long id = (long) thread * recordsPerThread + i;
+                        Map<String, Object> recordMap = new HashMap<>();
+                        recordMap.put("id", id);
+                        recordMap.put("name", "record-" + id);
+                        recordMap.put("amount", BigDecimal.valueOf(id * 31 - 5_000, 2));
+                        recordMap.put("tags", Map.of("thread", "t" + thread, "parity", id % 2 == 0 ? "even" : "odd"));
+                        recordMap.put("nested", Map.of("values", List.of(thread, i, -i)));
+
+                        Map<String, Object> resultMap = reader.read(writer.write(recordMap, schema), schema);
+                        assertEquals(recordMap, resultMap);
+                        verified++;
+                    }
+                    return verified;
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                assertEquals(recordsPerThread, (int) future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testNullInNullableUnion() throws Exception {
+        Schema schema = SchemaBuilder.record("TestRecord").fields()
+                .name("optionalField").type().unionOf().nullType().and().stringType().endUnion().noDefault()
+                .name("optionalItems").type().array().items().unionOf().nullType().and().intType().endUnion()
+                .noDefault()
+                .endRecord();
+
+        Map<String, Object> recordMap = new HashMap<>();
+        recordMap.put("optionalField", null);
+        recordMap.put("optionalItems", Arrays.asList(1, null, 3));
+
+        ByteBuffer byteBuffer = new AvroWriter().write(recordMap, schema);
+
+        GenericDatumReader<GenericRecord> datumReader = new GenericDatumReader<>(schema);
+        Decoder decoder = DecoderFactory.get().binaryDecoder(byteBuffer.array(), null);
+        GenericRecord genericRecord = datumReader.read(null, decoder);
+
+        assertNull(genericRecord.get("optionalField"));
+        assertEquals(Arrays.asList(1, null, 3), genericRecord.get("optionalItems"));
+    }
+
+    public void testNullInNonNullableField() {
+        Schema schema = SchemaBuilder.record("TestRecord").fields()
+                .name("requiredField").type().stringType().noDefault()
+                .endRecord();
+
+        Map<String, Object> recordMap = new HashMap<>();
+        recordMap.put("requiredField", null);
+
+        try {
+            new AvroWriter().write(recordMap, schema);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    public void testInvalidEnumSymbol() {
+        Schema schema = SchemaBuilder.record("TestRecord").fields()
+                .name("color").type().enumeration("Color").symbols("RED", "GREEN", "BLUE").noDefault()
+                .endRecord();
+
+        Map<String, Object> recordMap = new HashMap<>();
+        recordMap.put("color", "PURPLE");
+
+        for (boolean trustedInput : new boolean[]{false, true}) {
+            try {
+                new AvroWriter(AvroWriter.DEFAULT_LOGICAL_TYPE_WRITERS, null, trustedInput).write(recordMap, schema);
+                fail("Expected IOException");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("PURPLE"));
+            }
+        }
+    }
+
+    public void testTrustedInput() throws Exception {
+        Schema schema = SchemaBuilder.record("TestRecord").fields()
+                .name("name").type().unionOf().nullType().and().stringType().endUnion().noDefault()
+                .name("nickname").type().unionOf().stringType().and().nullType().endUnion().noDefault()
+                .name("color").type().enumeration("Color").symbols("RED", "GREEN", "BLUE").noDefault()
+                .name("hash").type().fixed("Hash").size(4).noDefault()
+                .endRecord();
+
+        Map<String, Object> recordMap = new HashMap<>();
+        recordMap.put("name", "Alice");
+        recordMap.put("nickname", null);
+        recordMap.put("color", "BLUE");
+        recordMap.put("hash", ByteBuffer.wrap(new byte[]{1, 2, 3, 4}));
+
+        AvroWriter trustedWriter = new AvroWriter(AvroWriter.DEFAULT_LOGICAL_TYPE_WRITERS, null, true);
+        ByteBuffer trusted = trustedWriter.write(recordMap, schema);
+
+        assertEquals(new AvroWriter().write(recordMap, schema), trusted);
+        assertEquals(recordMap, new AvroReader().read(trusted, schema));
+    }
+
+    public void testValidate() {
+        Schema schema = SchemaBuilder.record("TestRecord").fields()
+                .name("id").type().longType().noDefault()
+                .name("name").type().unionOf().nullType().and().stringType().endUnion().noDefault()
+                .name("color").type().enumeration("Color").symbols("RED", "GREEN", "BLUE").noDefault()
+                .name("hash").type().fixed("Hash").size(4).noDefault()
+                .name("scores").type().array().items().intType().noDefault()
+                .name("labels").type().map().values().stringType().noDefault()
+                .name("nested").type().record("Nested").fields()
+                    .name("flag").type().booleanType().noDefault()
+                    .endRecord().noDefault()
+                .endRecord();
+
+        Map<String, Object> validMap = new HashMap<>();
+        validMap.put("id", 1L);
+        validMap.put("name", null);
+        validMap.put("color", "RED");
+        validMap.put("hash", ByteBuffer.wrap(new byte[]{1, 2, 3, 4}));
+        validMap.put("scores", List.of(1, 2));
+        validMap.put("labels", Map.of("a", "b"));
+        validMap.put("nested", Map.of("flag", true));
+
+        AvroWriter writer = new AvroWriter();
+        assertTrue(writer.validate(validMap, schema).isEmpty());
+
+        Map<String, Object> invalidMap = new HashMap<>();
+        invalidMap.put("id", 1);
+        invalidMap.put("name", 42);
+        invalidMap.put("color", "PURPLE");
+        invalidMap.put("hash", ByteBuffer.wrap(new byte[]{1, 2}));
+        invalidMap.put("scores", List.of(1, "two"));
+        invalidMap.put("labels", Map.of("a", 1));
+        invalidMap.put("nested", new HashMap<>());
+
+        List<AvroWriter.ValidationError> errors = writer.validate(invalidMap, schema);
+        Map<String, String> reasons = new HashMap<>();
+        for (AvroWriter.ValidationError error : errors) {
+            reasons.put(error.getPath(), error.getReason());
+        }
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("id", "type mismatch");
+        expected.put("name", "no matching union branch");
+        expected.put("color", "unknown enum symbol");
+        expected.put("hash", "wrong fixed size");
+        expected.put("scores[1]", "type mismatch");
+        expected.put("labels[a]", "type mismatch");
+        expected.put("nested.flag", "type mismatch");
+        assertEquals(expected, reasons);
+        assertEquals(7, errors.size());
+    }
+
+    public void testValidateDecimals() throws Exception {
+        Schema bytesDecimal = LogicalTypes.decimal(4, 2).addToSchema(Schema.create(Schema.Type.BYTES));
+        Schema fixedDecimal = LogicalTypes.decimal(4).addToSchema(Schema.createFixed("Amount", null, null, 2));
+        Schema schema = SchemaBuilder.record("TestRecord").fields()
+                .name("scaled").type(bytesDecimal).noDefault()
+                .name("precise").type(bytesDecimal).noDefault()
+                .name("fixed").type(fixedDecimal).noDefault()
+                .endRecord();
+
+        Map<String, Object> validMap = new HashMap<>();
+        validMap.put("scaled", new BigDecimal("12.3"));
+        validMap.put("precise", new BigDecimal("12.340"));
+        validMap.put("fixed", new BigDecimal("-9999"));
+
+        AvroWriter writer = new AvroWriter();
+        assertTrue(writer.validate(validMap, schema).isEmpty());
+        writer.write(validMap, schema);
+
+        Map<String, Object> invalidMap = new HashMap<>();
+        invalidMap.put("scaled", new BigDecimal("123.456"));
+        invalidMap.put("precise", new BigDecimal("123.4"));
+        invalidMap.put("fixed", new BigDecimal("10000"));
+
+        Map<String, String> reasons = new HashMap<>();
+        for (AvroWriter.ValidationError error : writer.validate(invalidMap, schema)) {
+            reasons.put(error.getPath(), error.getReason());
+        }
+        Map<String, String> expected = new HashMap<>();
+        expected.put("scaled", "cannot rescale decimal");
+        expected.put("precise", "decimal precision exceeded");
+        expected.put("fixed", "decimal precision exceeded");
+        assertEquals(expected, reasons);
+
+        // Each value the validator rejects is also rejected by the writer.
+        for (String field : expected.keySet()) {
+            Map<String, Object> single = new HashMap<>(validMap);
+            single.put(field, invalidMap.get(field));
+            try {
+                writer.write(single, schema);
+                fail("Expected IOException for " + field);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    public void testValidateNestedIndexedRecord() throws Exception {
+        Schema nestedSchema = SchemaBuilder.record("Nested").fields()
+                .name("flag").type().booleanType().noDefault()
+                .endRecord();
+        Schema schema = SchemaBuilder.record("TestRecord").fields()
+                .name("nested").type(nestedSchema).noDefault()
+                .endRecord();
+
+        GenericData.Record nested = new GenericData.Record(nestedSchema);
+        nested.put("flag", true);
+        Map<String, Object> recordMap = new HashMap<>();
+        recordMap.put("nested", nested);
+
+        AvroWriter writer = new AvroWriter();
+        assertTrue(writer.validate(recordMap, schema).isEmpty());
+        writer.write(recordMap, schema);
+
+        // A record with another schema is checked field by field against the target, as the writer writes it.
+        Schema otherSchema = SchemaBuilder.record("Nested").fields()
+                .name("flag").type().stringType().noDefault()
+                .endRecord();
+        GenericData.Record other = new GenericData.Record(otherSchema);
+        other.put("flag", "yes");
+        recordMap.put("nested", other);
+
+        List<AvroWriter.ValidationError> errors = writer.validate(recordMap, schema);
+        assertEquals(1, errors.size());
+        assertEquals("nested.flag", errors.get(0).getPath());
+        assertEquals("type mismatch", errors.get(0).getReason());
+    }
+
+    public void testValidateUnionIndexedRecord() throws Exception {
+        Schema nestedSchema = SchemaBuilder.record("Nested").fields()
+                .name("flag").type().booleanType().noDefault()
+                .endRecord();
+        Schema schema = SchemaBuilder.record("TestRecord").fields()
+                .name("nested").type().unionOf().nullType().and().type(nestedSchema).endUnion().noDefault()
+                .endRecord();
+
+        GenericData.Record nested = new GenericData.Record(nestedSchema);
+        nested.put("flag", true);
+        Map<String, Object> recordMap = new HashMap<>();
+        recordMap.put("nested", nested);
+
+        AvroWriter writer = new AvroWriter();
+        assertTrue(writer.validate(recordMap, schema).isEmpty());
+        writer.write(recordMap, schema);
+
+        GenericData.Record unrelated = new GenericData.Record(SchemaBuilder.record("Unrelated").fields()
+                .name("flag").type().booleanType().noDefault()
+                .endRecord());
+        unrelated.put("flag", true);
+        recordMap.put("nested", unrelated);
+
+        List<AvroWriter.ValidationError> errors = writer.validate(recordMap, schema);
+        assertEquals(1, errors.size());
+        assertEquals("no matching union branch", errors.get(0).getReason());
+    }
+
     public void testUUID() throws Exception {
         String schemaJson = "{\n" +
                 "  \"type\": \"record\",\n" +
@@ -457,4 +883,196 @@ public class AvroWriterTest extends TestCase {
         long readMicros = (Long) genericRecord.get("localTimestampMicrosField");
         assertEquals(localTimestamp.truncatedTo(ChronoUnit.MICROS), LocalDateTime.ofInstant(Instant.ofEpochSecond(0, readMicros * 1_000), ZoneOffset.UTC));
     }
+
+    public void testWriteWrappedRecords() throws IOException {
+        Schema uuidSchema = LogicalTypes.uuid().addToSchema(Schema.create(Schema.Type.STRING));
+        Schema nestedSchema = SchemaBuilder.record("Nested").fields()
+                .requiredInt("count")
+                .endRecord();
+        Schema schema = SchemaBuilder.record("TestRecord").fields()
+                .name("id").type(uuidSchema).noDefault()
+                .requiredString("name")
+                .name("nested").type().optional().type(nestedSchema)
+                .name("tags").type().array().items().stringType().noDefault()
+                .endRecord();
+
+        GenericRecord nested = new GenericData.Record(nestedSchema);
+        nested.put("count", 7);
+        GenericRecord record = new GenericData.Record(schema);
+        record.put("id", UUID.randomUUID().toString());
+        record.put("name", "before");
+        record.put("nested", nested);
+        record.put("tags", Arrays.asList("a", "b"));
+
+        AvroWriter writer = new AvroWriter();
+        ByteBuffer expected = encode(record, schema);
+        assertEquals(expected, writer.write(new AvroWrapper().wrap(record), schema));
+        assertEquals(expected, writer.write(record, schema));
+
+        AvroWrapper.MutableFacade mutable = new AvroWrapper().wrapMutable(record);
+        mutable.put("name", "after");
+        assertEquals(encode(mutable.toIndexedRecord(), schema), writer.write(mutable, schema));
+
+        // IndexedRecords nested in Java maps are encoded directly too.
+        Map<String, Object> map = new HashMap<>(new AvroWrapper().wrap(record));
+        map.put("nested", nested);
+        assertEquals(expected, writer.write(map, schema));
+
+        // A record with a different schema is written through its fields.
+        Schema narrowSchema = SchemaBuilder.record("TestRecord").fields()
+                .requiredString("name")
+                .endRecord();
+        GenericRecord narrow = new GenericData.Record(narrowSchema);
+        narrow.put("name", "before");
+        assertEquals(encode(narrow, narrowSchema), writer.write(record, narrowSchema));
+    }
+
+    public void testWriteWrappedRecordOverrides() throws IOException {
+        Schema schema = SchemaBuilder.record("TestRecord").fields()
+                .requiredString("name")
+                .name("hash").type().fixed("Hash").size(2).noDefault()
+                .endRecord();
+        GenericRecord record = new GenericData.Record(schema);
+        record.put("name", "x");
+        record.put("hash", new GenericData.Fixed(schema.getField("hash").schema(), new byte[]{1, 2}));
+
+        // Overrides are written in Avro's representation, whatever Java type they were put as.
+        AvroWrapper.MutableFacade mutable = new AvroWrapper().wrapMutable(record);
+        mutable.put("name", new Utf8("y"));
+        assertEquals(encode(mutable.toIndexedRecord(), schema), new AvroWriter().write(mutable, schema));
+
+        // Records that don't match their schema fail like Maps do.
+        record.put("name", null);
+        try {
+            new AvroWriter().write(record, schema);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+        record.put("name", "x");
+        record.put("hash", new GenericData.Fixed(schema.getField("hash").schema(), new byte[]{1, 2, 3}));
+        try {
+            new AvroWriter().write(record, schema);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    public void testWriteSpecificRecordWithLogicalTypes() throws IOException {
+        TestEvent event = new TestEvent();
+        event.put(0, Instant.ofEpochMilli(1_600_000_000_123L));
+        event.put(1, LocalDate.of(2023, 5, 17));
+        event.put(2, new BigDecimal("12.34"));
+
+        Map<String, Object> map = new HashMap<>();
+        map.put("timestamp", event.get(0));
+        map.put("date", event.get(1));
+        map.put("amount", event.get(2));
+
+        AvroWriter writer = new AvroWriter();
+        ByteBuffer expected = writer.write(map, TestEvent.SCHEMA$);
+        assertEquals(expected, writer.write(event, TestEvent.SCHEMA$));
+        assertEquals(expected, writer.write(new AvroWrapper().wrap(event), TestEvent.SCHEMA$));
+    }
+
+    public void testWriteRecordWithCustomLogicalTypeWriter() throws IOException {
+        Schema dateSchema = LogicalTypes.date().addToSchema(Schema.create(Schema.Type.INT));
+        Schema schema = SchemaBuilder.record("TestRecord").fields()
+                .name("date").type(dateSchema).noDefault()
+                .endRecord();
+        GenericRecord record = new GenericData.Record(schema);
+        record.put("date", (int) LocalDate.of(2023, 5, 17).toEpochDay());
+
+        // A custom writer for a logical type is used for records too, instead of Avro's own conversion.
+        Map<String, AvroWriter.LogicalTypeWriter> writers = new HashMap<>(AvroWriter.DEFAULT_LOGICAL_TYPE_WRITERS);
+        writers.put("date", new AvroWriter.LogicalTypeWriter() {
+            @Override
+            public void write(Object value, Schema schema, Encoder out) throws IOException {
+                out.writeInt(42);
+            }
+
+            @Override
+            public Class<?> getExpectedClass() {
+                return LocalDate.class;
+            }
+        });
+        ByteBuffer written = new AvroWriter(writers).write(record, schema);
+        assertEquals(LocalDate.ofEpochDay(42), new AvroReader().read(written, schema).get("date"));
+    }
+
+    /**
+     * A record class shaped like the classes Avro's code generator produces for logical types.
+     */
+    public static class TestEvent extends SpecificRecordBase {
+        public static final Schema SCHEMA$ = SchemaBuilder.record("TestEvent").namespace("dev.twister.avro")
+                .fields()
+                .name("timestamp").type(LogicalTypes.timestampMillis().addToSchema(Schema.create(Schema.Type.LONG)))
+                .noDefault()
+                .name("date").type(LogicalTypes.date().addToSchema(Schema.create(Schema.Type.INT))).noDefault()
+                .name("amount").type(LogicalTypes.decimal(10, 2).addToSchema(Schema.create(Schema.Type.BYTES)))
+                .noDefault()
+                .endRecord();
+
+        private static final SpecificData MODEL$ = new SpecificData();
+
+        private static final Conversion<?>[] CONVERSIONS = {
+            new TimeConversions.TimestampMillisConversion(),
+            new TimeConversions.DateConversion(),
+            new Conversions.DecimalConversion(),
+        };
+
+        static {
+            for (Conversion<?> conversion : CONVERSIONS) {
+                MODEL$.addLogicalTypeConversion(conversion);
+            }
+        }
+
+        private Instant timestamp;
+        private LocalDate date;
+        private BigDecimal amount;
+
+        @Override
+        public Schema getSchema() {
+            return SCHEMA$;
+        }
+
+        @Override
+        public SpecificData getSpecificData() {
+            return MODEL$;
+        }
+
+        @Override
+        public Conversion<?> getConversion(int field) {
+            return CONVERSIONS[field];
+        }
+
+        @Override
+        public Object get(int field) {
+            switch (field) {
+                case 0: return timestamp;
+                case 1: return date;
+                case 2: return amount;
+                default: throw new IndexOutOfBoundsException("Invalid index: " + field);
+            }
+        }
+
+        @Override
+        public void put(int field, Object value) {
+            switch (field) {
+                case 0: timestamp = (Instant) value; break;
+                case 1: date = (LocalDate) value; break;
+                case 2: amount = (BigDecimal) value; break;
+                default: throw new IndexOutOfBoundsException("Invalid index: " + field);
+            }
+        }
+    }
+
+    private static ByteBuffer encode(IndexedRecord record, Schema schema) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(outputStream, null);
+        new GenericDatumWriter<IndexedRecord>(schema).write(record, encoder);
+        encoder.flush();
+        return ByteBuffer.wrap(outputStream.toByteArray());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,360 @@
+package dev.twister.proto;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * A growable list backed by an array of primitives, used by {@link ProtoReader} for repeated numeric fields so their
+ * values aren't boxed until they are read through the List interface. Each subclass adds unboxed accessors for its
+ * primitive type.
+ *
+ * @param <E> The boxed type of the values.
+ */
+public abstract class PrimitiveList<E> extends AbstractList<E> implements RandomAccess {
+
+    /**
+     * The number of values in the list.
+     */
+    int size;
+
+    PrimitiveList() {
+    }
+
+    /**
+     * Returns the backing array, which may be longer than the list.
+     *
+     * @return The backing array.
+     */
+    abstract Object array();
+
+    /**
+     * Appends a boxed value, growing the backing array if needed.
+     *
+     * @param value The value to append.
+     */
+    abstract void append(E value);
+
+    /**
+     * Stores a boxed value at an index that is already known to be in range.
+     *
+     * @param index The index of the value.
+     * @param value The value to store.
+     */
+    abstract void store(int index, E value);
+
+    @Override
+    public E set(int index, E value) {
+        E previous = get(index);
+        store(index, value);
+        return previous;
+    }
+
+    @Override
+    public void add(int index, E value) {
+        Objects.checkIndex(index, size + 1);
+        append(value);
+        // Appending may have replaced the backing array, so it is fetched afterwards.
+        Object array = array();
+        System.arraycopy(array, index, array, index + 1, size - 1 - index);
+        store(index, value);
+    }
+
+    @Override
+    public E remove(int index) {
+        E previous = get(index);
+        Object array = array();
+        System.arraycopy(array, index + 1, array, index, size - 1 - index);
+        size--;
+        modCount++;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * A list of ints backed by an int array.
+     */
+    public static final class IntList extends PrimitiveList<Integer> {
+        private int[] values;
+
+        /**
+         * Creates an empty list with room for the given number of values.
+         *
+         * @param capacity The initial capacity.
+         */
+        public IntList(int capacity) {
+            this.values = new int[Math.max(capacity, 1)];
+        }
+
+        /**
+         * Returns the value at an index without boxing it.
+         *
+         * @param index The index of the value.
+         * @return The value.
+         */
+        public int getInt(int index) {
+            Objects.checkIndex(index, size);
+            return values[index];
+        }
+
+        /**
+         * Appends a value without boxing it.
+         *
+         * @param value The value to append.
+         */
+        public void addInt(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+            modCount++;
+        }
+
+        /**
+         * Returns a copy of the values as an array.
+         *
+         * @return The values.
+         */
+        public int[] toIntArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        @Override
+        public Integer get(int index) {
+            return getInt(index);
+        }
+
+        @Override
+        Object array() {
+            return values;
+        }
+
+        @Override
+        void append(Integer value) {
+            addInt(value);
+        }
+
+        @Override
+        void store(int index, Integer value) {
+            values[index] = value;
+        }
+    }
+
+    /**
+     * A list of longs backed by a long array.
+     */
+    public static final class LongList extends PrimitiveList<Long> {
+        private long[] values;
+
+        /**
+         * Creates an empty list with room for the given number of values.
+         *
+         * @param capacity The initial capacity.
+         */
+        public LongList(int capacity) {
+            this.values = new long[Math.max(capacity, 1)];
+        }
+
+        /**
+         * Returns the value at an index without boxing it.
+         *
+         * @param index The index of the value.
+         * @return The value.
+         */
+        public long getLong(int index) {
+            Objects.checkIndex(index, size);
+            return values[index];
+        }
+
+        /**
+         * Appends a value without boxing it.
+         *
+         * @param value The value to append.
+         */
+        public void addLong(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+            modCount++;
+        }
+
+        /**
+         * Returns a copy of the values as an array.
+         *
+         * @return The values.
+         */
+        public long[] toLongArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        @Override
+        public Long get(int index) {
+            return getLong(index);
+        }
+
+        @Override
+        Object array() {
+            return values;
+        }
+
+        @Override
+        void append(Long value) {
+            addLong(value);
+        }
+
+        @Override
+        void store(int index, Long value) {
+            values[index] = value;
+        }
+    }
+
+    /**
+     * A list of floats backed by a float array.
+     */
+    public static final class FloatList extends PrimitiveList<Float> {
+        private float[] values;
+
+        /**
+         * Creates an empty list with room for the given number of values.
+         *
+         * @param capacity The initial capacity.
+         */
+        public FloatList(int capacity) {
+            this.values = new float[Math.max(capacity, 1)];
+        }
+
+        /**
+         * Returns the value at an index without boxing it.
+         *
+         * @param index The index of the value.
+         * @return The value.
+         */
+        public float getFloat(int index) {
+            Objects.checkIndex(index, size);
+            return values[index];
+        }
+
+        /**
+         * Appends a value without boxing it.
+         *
+         * @param value The value to append.
+         */
+        public void addFloat(float value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+            modCount++;
+        }
+
+        /**
+         * Returns a copy of the values as an array.
+         *
+         * @return The values.
+         */
+        public float[] toFloatArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        @Override
+        public Float get(int index) {
+            return getFloat(index);
+        }
+
+        @Override
+        Object array() {
+            return values;
+        }
+
+        @Override
+        void append(Float value) {
+            addFloat(value);
+        }
+
+        @Override
+        void store(int index, Float value) {
+            values[index] = value;
+        }
+    }
+
+    /**
+     * A list of doubles backed by a double array.
+     */
+    public static final class DoubleList extends PrimitiveList<Double> {
+        private double[] values;
+
+        /**
+         * Creates an empty list with room for the given number of values.
+         *
+         * @param capacity The initial capacity.
+         */
+        public DoubleList(int capacity) {
+            this.values = new double[Math.max(capacity, 1)];
+        }
+
+        /**
+         * Returns the value at an index without boxing it.
+         *
+         * @param index The index of the value.
+         * @return The value.
+         */
+        public double getDouble(int index) {
+            Objects.checkIndex(index, size);
+            return values[index];
+        }
+
+        /**
+         * Appends a value without boxing it.
+         *
+         * @param value The value to append.
+         */
+        public void addDouble(double value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+            modCount++;
+        }
+
+        /**
+         * Returns a copy of the values as an array.
+         *
+         * @return The values.
+         */
+        public double[] toDoubleArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        @Override
+        public Double get(int index) {
+            return getDouble(index);
+        }
+
+        @Override
+        Object array() {
+            return values;
+        }
+
+        @Override
+        void append(Double value) {
+            addDouble(value);
+        }
+
+        @Override
+        void store(int index, Double value) {
+            values[index] = value;
+        }
+    }
+}
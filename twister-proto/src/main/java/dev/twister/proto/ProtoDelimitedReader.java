@@ -0,0 +1,341 @@
+package dev.twister.proto;
+
+import com.google.protobuf.Descriptors.Descriptor;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A utility class for reading a sequence of varint length-delimited Protocol Buffers messages, as written by
+ * {@code MessageLite.writeDelimitedTo}, and converting each one into a Map.
+ * <p>
+ * Messages are read through a single buffer that is refilled from the source as it drains, so memory use is bounded
+ * by the buffer size or the largest message, whichever is bigger. Messages longer than the maximum message size,
+ * 64 MiB unless set with {@link #setMaxMessageSize(int)}, are rejected before any memory is allocated for them.
+ * Memory-mapped files are read through a sliding window of the file instead, without copying. Each message is
+ * decoded with a {@link ProtoReader}.
+ * <p>
+ * When reading from a stream or channel, bytes fields and preserved unknown fields of the returned maps are views
+ * of the reused buffer unless the {@link ProtoReader} was built with
+ * {@link ProtoReader.Builder#copyBytes(boolean)} enabled, so they are only valid until the next message is read.
+ * The default reader of these constructors copies them.
+ * <p>
+ * A ProtoDelimitedReader is not thread-safe.
+ */
+public class ProtoDelimitedReader implements Iterator<Map<String, Object>>, Closeable {
+
+    /**
+     * The initial size of the buffer used for streams and channels.
+     */
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The size of the window mapped at a time for memory-mapped files. Windows are larger when a message needs it.
+     */
+    private static final long MAPPED_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * The default maximum message size, the same limit protobuf's CodedInputStream applies.
+     */
+    private static final int DEFAULT_MAX_MESSAGE_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * The maximum size of a varint-encoded message length.
+     */
+    private static final int MAX_LENGTH_SIZE = 5;
+
+    /**
+     * The reader used when none is given, which copies bytes fields and preserved unknown fields out of the reused
+     * buffer.
+     */
+    private static final ProtoReader COPYING_READER = ProtoReader.builder().copyBytes(true).build();
+
+    private final ReadableByteChannel channel;
+    private final FileChannel mappedChannel;
+    private final Descriptor descriptor;
+    private final ProtoReader reader;
+
+    /**
+     * The largest message length accepted, in bytes.
+     */
+    private int maxMessageSize = DEFAULT_MAX_MESSAGE_SIZE;
+
+    /**
+     * The buffer holding the unread bytes, between its position and limit.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * The file offset of the start of the mapped window, for memory-mapped files.
+     */
+    private long mappedOffset;
+
+    /**
+     * The message read by {@link #hasNext()} and not yet returned by {@link #next()}, or null.
+     */
+    private Map<String, Object> nextMessage;
+
+    /**
+     * Constructs a new {@link ProtoDelimitedReader} that reads messages from an InputStream.
+     *
+     * @param inputStream The InputStream to read from. It is closed when this reader is closed.
+     * @param descriptor The Descriptor of the Protocol Buffers messages.
+     */
+    public ProtoDelimitedReader(InputStream inputStream, Descriptor descriptor) {
+        this(Channels.newChannel(inputStream), descriptor, COPYING_READER);
+    }
+
+    /**
+     * Constructs a new {@link ProtoDelimitedReader} that reads messages from an InputStream with a given
+     * {@link ProtoReader}.
+     *
+     * @param inputStream The InputStream to read from. It is closed when this reader is closed.
+     * @param descriptor The Descriptor of the Protocol Buffers messages.
+     * @param reader The ProtoReader used to decode each message.
+     */
+    public ProtoDelimitedReader(InputStream inputStream, Descriptor descriptor, ProtoReader reader) {
+        this(Channels.newChannel(inputStream), descriptor, reader);
+    }
+
+    /**
+     * Constructs a new {@link ProtoDelimitedReader} that reads messages from a channel.
+     *
+     * @param channel The channel to read from, which must be in blocking mode. It is closed when this reader is
+     * closed.
+     * @param descriptor The Descriptor of the Protocol Buffers messages.
+     * @throws IllegalArgumentException If the channel is in non-blocking mode.
+     */
+    public ProtoDelimitedReader(ReadableByteChannel channel, Descriptor descriptor) {
+        this(channel, descriptor, COPYING_READER);
+    }
+
+    /**
+     * Constructs a new {@link ProtoDelimitedReader} that reads messages from a channel with a given
+     * {@link ProtoReader}.
+     *
+     * @param channel The channel to read from, which must be in blocking mode. It is closed when this reader is
+     * closed.
+     * @param descriptor The Descriptor of the Protocol Buffers messages.
+     * @param reader The ProtoReader used to decode each message.
+     * @throws IllegalArgumentException If the channel is in non-blocking mode.
+     */
+    public ProtoDelimitedReader(ReadableByteChannel channel, Descriptor descriptor, ProtoReader reader) {
+        this(channel, null, descriptor, reader);
+        this.buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE).limit(0);
+    }
+
+    private ProtoDelimitedReader(ReadableByteChannel channel, FileChannel mappedChannel, Descriptor descriptor,
+                                 ProtoReader reader) {
+        if (channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+            throw new IllegalArgumentException("Channel must be in blocking mode");
+        }
+        this.channel = channel;
+        this.mappedChannel = mappedChannel;
+        this.descriptor = descriptor;
+        this.reader = reader;
+        this.buffer = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Creates a {@link ProtoDelimitedReader} that reads messages from a memory-mapped file, starting at the
+     * channel's current position. Bytes fields are views of the mapped file, which stay valid after the reader is
+     * closed.
+     *
+     * @param fileChannel The FileChannel of the file. It is closed when this reader is closed.
+     * @param descriptor The Descriptor of the Protocol Buffers messages.
+     * @param reader The ProtoReader used to decode each message.
+     * @return A reader over the file's messages.
+     * @throws IOException If the channel's position can't be read.
+     */
+    public static ProtoDelimitedReader mapped(FileChannel fileChannel, Descriptor descriptor, ProtoReader reader)
+            throws IOException {
+        ProtoDelimitedReader delimitedReader = new ProtoDelimitedReader(fileChannel, fileChannel, descriptor, reader);
+        delimitedReader.mappedOffset = fileChannel.position();
+        return delimitedReader;
+    }
+
+    /**
+     * Sets the largest message length accepted. A longer length prefix, such as one read from corrupt data, makes
+     * the reader throw instead of allocating a buffer for it.
+     *
+     * @param maxMessageSize The largest message length accepted, in bytes.
+     * @throws IllegalArgumentException If the size is negative.
+     */
+    public void setMaxMessageSize(int maxMessageSize) {
+        if (maxMessageSize < 0) {
+            throw new IllegalArgumentException("Negative maximum message size: " + maxMessageSize);
+        }
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    /**
+     * Returns whether there is another message to read.
+     *
+     * @return Whether there is another message.
+     * @throws UncheckedIOException If the source can't be read, or ends in the middle of a message.
+     */
+    @Override
+    public boolean hasNext() {
+        if (nextMessage == null) {
+            try {
+                nextMessage = readNext();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return nextMessage != null;
+    }
+
+    /**
+     * Returns the next message.
+     *
+     * @return The next message, as a Map.
+     * @throws NoSuchElementException If there are no more messages.
+     * @throws UncheckedIOException If the source can't be read, or ends in the middle of a message.
+     */
+    @Override
+    public Map<String, Object> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Map<String, Object> message = nextMessage;
+        nextMessage = null;
+        return message;
+    }
+
+    /**
+     * Returns a sequential Stream of the remaining messages. Closing the stream closes this reader.
+     *
+     * @return A Stream of the remaining messages.
+     */
+    public Stream<Map<String, Object>> stream() {
+        Spliterator<Map<String, Object>> spliterator = Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Closes the underlying source.
+     *
+     * @throws IOException If the source can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads the next message from the source.
+     *
+     * @return The next message, or null if the source ended cleanly between messages.
+     * @throws IOException If the source can't be read, or ends in the middle of a message.
+     */
+    private Map<String, Object> readNext() throws IOException {
+        if (!fill(1)) {
+            return null;
+        }
+        // The length may be shorter than the maximum, so a short fill here is not an error.
+        fill(MAX_LENGTH_SIZE);
+        int length = readLength();
+        if (length > maxMessageSize) {
+            throw new IOException("Message length " + length + " exceeds the maximum of " + maxMessageSize);
+        }
+        if (!fill(length)) {
+            throw new EOFException("Truncated message: expected " + length + " bytes but found "
+                    + buffer.remaining());
+        }
+        ByteBuffer message = buffer.slice();
+        message.limit(length);
+        buffer.position(buffer.position() + length);
+        return reader.readMessage(message, descriptor);
+    }
+
+    /**
+     * Reads a message's varint-encoded length from the buffer.
+     *
+     * @return The length.
+     * @throws IOException If the length is truncated or malformed.
+     */
+    private int readLength() throws IOException {
+        int length = 0;
+        for (int shift = 0; shift < MAX_LENGTH_SIZE * 7; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                throw new EOFException("Truncated message length");
+            }
+            byte currentByte = buffer.get();
+            if (shift == 28 && (currentByte & 0x70) != 0) {
+                // The last byte only has room for the top 4 bits of an int; the shift would drop any higher bits.
+                throw new IOException("Malformed message length");
+            }
+            length |= (currentByte & 0x7F) << shift;
+            if (currentByte >= 0) {
+                if (length < 0) {
+                    throw new IOException("Negative message length: " + length);
+                }
+                return length;
+            }
+        }
+        throw new IOException("Malformed message length");
+    }
+
+    /**
+     * Makes sure the buffer holds at least the given number of unread bytes, refilling it from the source.
+     *
+     * @param needed The number of bytes needed.
+     * @return Whether the bytes are available. If not, the source has ended and the buffer holds what was left.
+     * @throws IOException If the source can't be read.
+     */
+    private boolean fill(int needed) throws IOException {
+        if (buffer.remaining() >= needed) {
+            return true;
+        }
+        if (mappedChannel != null) {
+            long start = mappedOffset + buffer.position();
+            long size = Math.min(mappedChannel.size() - start, Math.max(needed, MAPPED_WINDOW_SIZE));
+            buffer = mappedChannel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            mappedOffset = start;
+            return buffer.remaining() >= needed;
+        }
+        if (buffer.capacity() < needed) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(needed, buffer.capacity() * 2));
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.compact();
+        }
+        // Keep reading until the bytes are available or the source ends.
+        while (buffer.position() < needed) {
+            int read = channel.read(buffer);
+            if (read < 0) {
+                break;
+            }
+            if (read == 0) {
+                // A blocking channel only reads nothing when the buffer is full, which the sizing above rules out.
+                throw new IOException("Channel returned no bytes; non-blocking channels aren't supported");
+            }
+        }
+        buffer.flip();
+        return buffer.remaining() >= needed;
+    }
+}
@@ -3,219 +3,841 @@ package dev.twister.proto;
 import com.google.protobuf.Descriptors;
 import com.google.protobuf.Descriptors.Descriptor;
 import com.google.protobuf.Descriptors.FieldDescriptor;
-import com.google.protobuf.Descriptors.OneofDescriptor;
+import dev.twister.proto.PrimitiveList.DoubleList;
+import dev.twister.proto.PrimitiveList.FloatList;
+import dev.twister.proto.PrimitiveList.IntList;
+import dev.twister.proto.PrimitiveList.LongList;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A utility class for reading a Protocol Buffers message from a ByteBuffer and converting it into a Map.
+ * <p>
+ * ProtoReader is immutable and thread-safe: a single instance can be shared by any number of threads. Per-message
+ * read plans are compiled on first use and cached in the instance. The static {@link #read(ByteBuffer, Descriptor)}
+ * method reads through a shared instance with the default options.
  */
 public class ProtoReader {
 
     /**
-     * Reads a Protocol Buffers message from a ByteBuffer and converts it into a Map.
+     * Fields numbered below this are looked up in a dense array indexed by field number; higher numbers fall
+     * back to a binary search so a message with a few very large field numbers doesn't get a huge table.
+     */
+    private static final int MAX_DENSE_FIELD_NUMBER = 1024;
+
+    /**
+     * Little-endian views of buffer content, used for absolute reads that leave the buffer's byte order alone.
+     */
+    private static final VarHandle LONG_LITTLE_ENDIAN =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_LITTLE_ENDIAN =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * The largest string, in bytes, decoded through the per-thread scratch array. Longer strings in direct or
+     * read-only buffers are copied into an array of their own.
+     */
+    private static final int MAX_SCRATCH_SIZE = 8 * 1024;
+
+    /**
+     * Per-thread scratch arrays that strings in direct or read-only buffers are copied into before decoding, so
+     * decoding them doesn't allocate a CharBuffer or a byte array per string.
+     */
+    private static final ThreadLocal<byte[]> STRING_SCRATCH = ThreadLocal.withInitial(() -> new byte[MAX_SCRATCH_SIZE]);
+
+    /**
+     * The shared reader used by {@link #read(ByteBuffer, Descriptor)}.
+     */
+    private static final ProtoReader DEFAULT_READER = new ProtoReader();
+
+    /**
+     * The result map key under which {@link UnknownFieldPolicy#PRESERVE} keeps the raw bytes of unknown fields.
+     * Protocol Buffers field names can't contain '$', so the key never collides with a field.
+     */
+    public static final String UNKNOWN_FIELDS_KEY = "$unknown";
+
+    /**
+     * Whether result maps are pre-populated with the default values of fields that declare one.
+     */
+    private final boolean populateDefaults;
+
+    /**
+     * What to do with fields whose numbers aren't in the message's descriptor.
+     */
+    private final UnknownFieldPolicy unknownFieldPolicy;
+
+    /**
+     * Whether bytes fields and preserved unknown fields are copied out of the input buffer rather than returned
+     * as views of it.
+     */
+    private final boolean copyBytes;
+
+    /**
+     * Compiled read plans for message types, keyed by descriptor. Plans are immutable once built, so lookups
+     * never block and a plan compiled by racing threads is equivalent to the one that wins.
+     */
+    private final ConcurrentHashMap<Descriptor, MessagePlan> messagePlans = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new {@link ProtoReader} with the default options.
+     */
+    public ProtoReader() {
+        this(builder());
+    }
+
+    /**
+     * Constructs a new {@link ProtoReader} with the options set on a {@link Builder}.
+     *
+     * @param builder The builder holding the options.
+     */
+    private ProtoReader(Builder builder) {
+        this.populateDefaults = builder.populateDefaults;
+        this.unknownFieldPolicy = builder.unknownFieldPolicy;
+        this.copyBytes = builder.copyBytes;
+    }
+
+    /**
+     * Returns a new {@link Builder} with the default options.
+     *
+     * @return A new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Reads a Protocol Buffers message from a ByteBuffer and converts it into a Map, using a shared reader with
+     * the default options.
      *
      * @param inputBuffer The ByteBuffer containing the Protocol Buffers message.
      * @param descriptor The Descriptor of the Protocol Buffers message.
      * @return A Map representing the Protocol Buffers message.
-     * @throws IllegalArgumentException If an unknown field number or enum value is encountered.
+     * @throws IllegalArgumentException If an unknown enum value is encountered.
      * @throws UnsupportedOperationException If an unsupported wire type or field type is encountered.
      */
     public static Map<String, Object> read(ByteBuffer inputBuffer, Descriptor descriptor) {
-        Map<String, Object> resultMap = new HashMap<>();
+        return DEFAULT_READER.readMessage(inputBuffer, descriptor);
+    }
 
-        // Initialize resultMap with default values
-        for (FieldDescriptor fieldDescriptor : descriptor.getFields()) {
-            if (fieldDescriptor.hasDefaultValue()) {
-                String fieldName = fieldDescriptor.getName();
-                Object defaultValue = fieldDescriptor.getDefaultValue();
-                resultMap.put(fieldName, defaultValue);
+    /**
+     * Reads a Protocol Buffers message from a ByteBuffer and converts it into a Map.
+     *
+     * @param inputBuffer The ByteBuffer containing the Protocol Buffers message.
+     * @param descriptor The Descriptor of the Protocol Buffers message.
+     * @return A Map representing the Protocol Buffers message.
+     * @throws IllegalArgumentException If an unknown enum value is encountered, or an unknown field number is
+     * encountered and the reader's policy is {@link UnknownFieldPolicy#FAIL}.
+     * @throws UnsupportedOperationException If an unsupported wire type or field type is encountered.
+     */
+    public Map<String, Object> readMessage(ByteBuffer inputBuffer, Descriptor descriptor) {
+        return readMessage(inputBuffer, getMessagePlan(descriptor));
+    }
+
+    /**
+     * Reads a Protocol Buffers message from a ByteBuffer into a Map returned by an earlier read, replacing its
+     * content. The lists of repeated fields and the maps of map fields in it are cleared and refilled rather than
+     * reallocated, so reading a stream of messages of the same type into one Map allocates little beyond the
+     * values themselves.
+     * <p>
+     * The lists and maps of repeated and map fields are reused, so callers must not keep them across reads. A
+     * container is only put back into the Map if its field appears in the new message, so the result always
+     * equals a fresh read of the same bytes.
+     *
+     * @param inputBuffer The ByteBuffer containing the Protocol Buffers message.
+     * @param descriptor The Descriptor of the Protocol Buffers message.
+     * @param reuse A mutable Map returned by an earlier read of the same message type, or an empty mutable Map.
+     * @return The reuse Map, holding the Protocol Buffers message.
+     * @throws IllegalArgumentException If an unknown enum value is encountered, or an unknown field number is
+     * encountered and the reader's policy is {@link UnknownFieldPolicy#FAIL}.
+     * @throws UnsupportedOperationException If an unsupported wire type or field type is encountered.
+     */
+    public Map<String, Object> readMessage(ByteBuffer inputBuffer, Descriptor descriptor,
+                                           Map<String, Object> reuse) {
+        MessagePlan plan = getMessagePlan(descriptor);
+
+        // Take the containers of repeated and map fields out of the Map, emptied. The read puts a container back
+        // when its field first appears, and containers of fields missing from this message are dropped with it.
+        Map<String, Object> recycled = null;
+        for (Map.Entry<String, Object> entry : reuse.entrySet()) {
+            FieldPlan field = plan.fieldsByName.get(entry.getKey());
+            Object value = entry.getValue();
+            if (field != null && field.mapEntry && value instanceof Map) {
+                ((Map<?, ?>) value).clear();
+            } else if (field != null && field.repeated && !field.mapEntry && value instanceof List) {
+                ((List<?>) value).clear();
+            } else {
+                continue;
             }
+            if (recycled == null) {
+                recycled = new HashMap<>();
+            }
+            recycled.put(entry.getKey(), value);
+        }
+        reuse.clear();
+
+        return readMessage(inputBuffer, plan, reuse, recycled);
+    }
+
+    /**
+     * Returns a lazy, read-only Map view of a Protocol Buffers message. A single scan over the message records
+     * where each field is, and each field is decoded the first time it is read. Nested messages are lazy views
+     * too, so a consumer that reads a few fields only pays for those fields.
+     * <p>
+     * The view reads from the buffer's content, which must not change while the view is in use. The view
+     * remembers the values it has decoded, so it is not thread-safe. The message's structure is checked by the
+     * scan, but errors in individual values, such as unknown enum numbers, are thrown when the value is read.
+     *
+     * @param inputBuffer The ByteBuffer containing the Protocol Buffers message. Its position is moved to its limit.
+     * @param descriptor The Descriptor of the Protocol Buffers message.
+     * @return A lazy Map view of the Protocol Buffers message.
+     * @throws IllegalArgumentException If an unknown field number is encountered and the reader's policy is
+     * {@link UnknownFieldPolicy#FAIL}.
+     */
+    public Map<String, Object> readLazy(ByteBuffer inputBuffer, Descriptor descriptor) {
+        ByteBuffer message = inputBuffer.slice();
+        inputBuffer.position(inputBuffer.limit());
+        return new LazyMessage(this, message, getMessagePlan(descriptor));
+    }
+
+    /**
+     * Compiles a projection of a message type that reads only the given fields. Each path is a field name, or a
+     * dot-separated path into nested message fields such as {@code "user.address.city"}. Every other field is
+     * skipped on the wire without being decoded. A path that ends at a message field reads the whole message.
+     * <p>
+     * Projections are immutable and thread-safe, and should be compiled once and reused.
+     *
+     * @param descriptor The Descriptor of the Protocol Buffers message.
+     * @param fieldPaths The paths of the fields to read.
+     * @return The compiled projection.
+     * @throws IllegalArgumentException If a path names a field that doesn't exist, or continues past a field
+     * that isn't a message or is a map.
+     */
+    public Projection project(Descriptor descriptor, Collection<String> fieldPaths) {
+        return new Projection(this, new MessagePlan(descriptor, populateDefaults, groupPaths(fieldPaths)));
+    }
+
+    /**
+     * Reads a Protocol Buffers message from a ByteBuffer using the message type's compiled plan.
+     *
+     * @param inputBuffer The ByteBuffer containing the Protocol Buffers message.
+     * @param plan The plan for the message type.
+     * @return A Map representing the Protocol Buffers message.
+     */
+    private Map<String, Object> readMessage(ByteBuffer inputBuffer, MessagePlan plan) {
+        return readMessage(inputBuffer, plan, new HashMap<>(plan.capacity), null);
+    }
+
+    /**
+     * Reads a Protocol Buffers message from a ByteBuffer into a result Map using the message type's compiled plan.
+     *
+     * @param inputBuffer The ByteBuffer containing the Protocol Buffers message.
+     * @param plan The plan for the message type.
+     * @param resultMap The Map to read the message into.
+     * @param recycled Emptied containers of repeated and map fields to reuse, keyed by field name, or null.
+     * @return The result Map.
+     */
+    private Map<String, Object> readMessage(ByteBuffer inputBuffer, MessagePlan plan, Map<String, Object> resultMap,
+                                            Map<String, Object> recycled) {
+        // Initialize resultMap with default values
+        for (int i = 0; i < plan.defaultNames.length; i++) {
+            resultMap.put(plan.defaultNames[i], plan.defaultValues[i]);
         }
 
         while (inputBuffer.hasRemaining()) {
+            int fieldStart = inputBuffer.position();
             int key = (int) readVarint(inputBuffer);
             int wireType = key & 0x07;
             int fieldNumber = key >>> 3;
 
-            FieldDescriptor fieldDescriptor = descriptor.findFieldByNumber(fieldNumber);
-
-            if (fieldDescriptor == null) {
-                throw new IllegalArgumentException("Unknown field number: " + fieldNumber);
-            }
-
-            OneofDescriptor oneofDescriptor = fieldDescriptor.getContainingOneof();
-            boolean isOneof = oneofDescriptor != null;
-
-            String fieldName = fieldDescriptor.getName();
-
-            switch (wireType) {
-                case 0: // Varint, SignedVarint, Bool, Enum
-                    long rawValue = readVarint(inputBuffer);
-                    Object value;
-
-                    switch (fieldDescriptor.getType()) {
-                        case BOOL:
-                            value = rawValue != 0;
-                            break;
-                        case INT32:
-                            value = (int) rawValue;
-                            break;
-                        case SINT32:
-                            value = decodeZigZag32((int) rawValue);
-                            break;
-                        case SINT64:
-                            value = decodeZigZag64(rawValue);
-                            break;
-                        case ENUM:
-                            Descriptors.EnumValueDescriptor enumValueDescriptor =
-                                    fieldDescriptor.getEnumType().findValueByNumber((int) rawValue);
-                            if (enumValueDescriptor == null) {
-                                throw new IllegalArgumentException("Unknown enum value: " + rawValue
-                                        + " for field number: " + fieldNumber);
-                            }
-                            value = enumValueDescriptor.getName();
-                            break;
-                        case UINT32:
-                        case FIXED32:
-                            value = rawValue & 0xFFFFFFFFL; // convert to long treating as unsigned
-                            break;
-                        case UINT64:
-                        case FIXED64:
-                            // convert to BigInteger treating as unsigned
-                            value = new BigInteger(Long.toUnsignedString(rawValue));
-                            break;
-                        default:
-                            value = rawValue;
-                            break;
-                    }
+            FieldPlan field = plan.getField(fieldNumber);
 
-                    addToResultMap(resultMap, fieldName, value, fieldDescriptor.isRepeated(), isOneof);
-                    break;
-                case 1: // Fixed64, SFixed64, Double
-                    long rawFixed64Value = inputBuffer.order(ByteOrder.LITTLE_ENDIAN).getLong();
-                    switch (fieldDescriptor.getType()) {
-                        case DOUBLE:
-                            value = Double.longBitsToDouble(rawFixed64Value);
-                            break;
-                        case FIXED64:
-                            value = BigInteger.valueOf(rawFixed64Value);
-                            break;
-                        case SFIXED64:
-                            value = rawFixed64Value;
-                            break;
-                        default:
-                            throw new UnsupportedOperationException("Unsupported type: " + fieldDescriptor.getType());
-                    }
-                    addToResultMap(resultMap, fieldName, value, fieldDescriptor.isRepeated(), isOneof);
-                    break;
-                case 2: // Length-Delimited
-                    // Check if the field is a map field
-                    if (fieldDescriptor.getType() == FieldDescriptor.Type.MESSAGE
-                            && fieldDescriptor.getMessageType().getOptions().getMapEntry()) {
-                        Descriptor mapEntryDescriptor = fieldDescriptor.getMessageType();
-                        FieldDescriptor keyField = mapEntryDescriptor.findFieldByNumber(1);
-                        FieldDescriptor valueField = mapEntryDescriptor.findFieldByNumber(2);
-
-                        int length = (int) readVarint(inputBuffer);
-                        byte[] bytes = new byte[length];
-                        inputBuffer.get(bytes);
-                        ByteBuffer nestedByteBuffer = ByteBuffer.wrap(bytes);
-                        Map<String, Object> mapEntry = read(nestedByteBuffer, mapEntryDescriptor);
-
-                        Object mapKey = mapEntry.get(keyField.getName());
-                        Object mapValue = mapEntry.get(valueField.getName());
-
-                        Map<Object, Object> map = (Map<Object, Object>) resultMap.computeIfAbsent(
-                                fieldName,
-                                k -> new HashMap<>());
-                        map.put(mapKey, mapValue);
-                    } else {
-                        int length = (int) readVarint(inputBuffer);
-                        byte[] bytes = new byte[length];
-                        inputBuffer.get(bytes);
-                        if (fieldDescriptor.getType() == FieldDescriptor.Type.STRING) {
-                            String string = new String(bytes, StandardCharsets.UTF_8);
-                            addToResultMap(resultMap, fieldName, string, fieldDescriptor.isRepeated(), isOneof);
-                        } else if (fieldDescriptor.getType() == FieldDescriptor.Type.BYTES) {
-                            ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
-                            addToResultMap(resultMap, fieldName, byteBuffer, fieldDescriptor.isRepeated(), isOneof);
-                        } else if (!isOneof && fieldDescriptor.getType() == FieldDescriptor.Type.MESSAGE) {
-                            ByteBuffer nestedByteBuffer = ByteBuffer.wrap(bytes);
-                            Map<String, Object> nestedMessage = read(
-                                    nestedByteBuffer,
-                                    fieldDescriptor.getMessageType());
-                            addToResultMap(resultMap, fieldName, nestedMessage, fieldDescriptor.isRepeated(), isOneof);
-                        } else {
-                            addToResultMap(resultMap, fieldName, bytes, fieldDescriptor.isRepeated(), isOneof);
+            if (field == null) {
+                readUnknownField(inputBuffer, fieldStart, wireType, fieldNumber, resultMap);
+                continue;
+            }
+            if (field.skipped) {
+                skipField(inputBuffer, wireType, fieldNumber);
+                continue;
+            }
+
+            readField(inputBuffer, field, wireType, resultMap, false, recycled);
+        }
+
+        return resultMap;
+    }
+
+    /**
+     * Reads one field's value, positioned just after its tag, and adds it to the result Map.
+     *
+     * @param inputBuffer The ByteBuffer positioned at the field's value.
+     * @param field The field's plan.
+     * @param wireType The field's wire type.
+     * @param resultMap The result Map.
+     * @param lazy Whether nested messages are read as lazy views instead of being decoded.
+     * @param recycled Emptied containers of repeated and map fields to reuse, keyed by field name, or null.
+     */
+    private void readField(ByteBuffer inputBuffer, FieldPlan field, int wireType, Map<String, Object> resultMap,
+                           boolean lazy, Map<String, Object> recycled) {
+        if (wireType == 2 && field.packable) {
+            int length = (int) readVarint(inputBuffer);
+            readPacked(slice(inputBuffer, length), field, resultMap, recycled);
+        } else if (wireType == 2 && field.mapEntry) {
+            int length = (int) readVarint(inputBuffer);
+            readMapEntry(slice(inputBuffer, length), field, resultMap, lazy, recycled);
+        } else {
+            addToResultMap(resultMap, field, readValue(inputBuffer, field, wireType, lazy), recycled);
+        }
+    }
+
+    /**
+     * Reads a single value of a field, positioned just after its tag.
+     *
+     * @param inputBuffer The ByteBuffer positioned at the field's value.
+     * @param field The field's plan.
+     * @param wireType The field's wire type.
+     * @param lazy Whether nested messages are read as lazy views instead of being decoded.
+     * @return The value.
+     */
+    private Object readValue(ByteBuffer inputBuffer, FieldPlan field, int wireType, boolean lazy) {
+        switch (wireType) {
+            case 0: // Varint, SignedVarint, Bool, Enum
+                return convertVarint(field, readVarint(inputBuffer));
+            case 1: // Fixed64, SFixed64, Double
+                return convertFixed64(field, readFixed64(inputBuffer));
+            case 2: // Length-Delimited
+                int length = (int) readVarint(inputBuffer);
+                ByteBuffer slice = slice(inputBuffer, length);
+                if (field.type == FieldDescriptor.Type.STRING) {
+                    return readString(slice);
+                } else if (field.type == FieldDescriptor.Type.BYTES) {
+                    return copyBytes ? copy(slice) : slice.asReadOnlyBuffer();
+                } else if (!field.oneof && field.type == FieldDescriptor.Type.MESSAGE) {
+                    return lazy
+                            ? new LazyMessage(this, slice, field.getMessagePlan(this))
+                            : readMessage(slice, field.getMessagePlan(this));
+                } else {
+                    byte[] bytes = new byte[length];
+                    slice.get(bytes);
+                    return bytes;
+                }
+            case 5: // Fixed32, SFixed32, Float
+                return convertFixed32(field, readFixed32(inputBuffer));
+            default:
+                throw new UnsupportedOperationException("Unsupported wire type: " + wireType);
+        }
+    }
+
+    /**
+     * Reads a map entry straight into its field's map, without building an intermediate Map for the entry.
+     * A missing key or value is read as null.
+     *
+     * @param entry The ByteBuffer holding the encoded entry.
+     * @param field The map field's plan.
+     * @param resultMap The result Map.
+     * @param lazy Whether message values are read as lazy views instead of being decoded.
+     * @param recycled Emptied containers of repeated and map fields to reuse, keyed by field name, or null.
+     */
+    private void readMapEntry(ByteBuffer entry, FieldPlan field, Map<String, Object> resultMap, boolean lazy,
+                              Map<String, Object> recycled) {
+        MessagePlan entryPlan = field.getMessagePlan(this);
+        Object mapKey = null;
+        Object mapValue = null;
+        while (entry.hasRemaining()) {
+            int key = (int) readVarint(entry);
+            FieldPlan entryField = entryPlan.getField(key >>> 3);
+            if (entryField == null) {
+                skipField(entry, key & 0x07, key >>> 3);
+            } else if (key >>> 3 == 1) {
+                mapKey = readValue(entry, entryField, key & 0x07, lazy);
+            } else {
+                mapValue = readValue(entry, entryField, key & 0x07, lazy);
+            }
+        }
+
+        Map<Object, Object> map = (Map<Object, Object>) resultMap.get(field.name);
+        if (map == null) {
+            map = recycled == null ? null : (Map<Object, Object>) recycled.remove(field.name);
+            if (map == null) {
+                map = new HashMap<>();
+            }
+            resultMap.put(field.name, map);
+        }
+        map.put(mapKey, mapValue);
+    }
+
+    /**
+     * Handles a field whose number isn't in the message's descriptor, according to the reader's policy.
+     *
+     * @param inputBuffer The ByteBuffer positioned just after the field's tag.
+     * @param fieldStart The position of the field's tag.
+     * @param wireType The field's wire type.
+     * @param fieldNumber The field's number.
+     * @param resultMap The result Map.
+     * @throws IllegalArgumentException If the reader's policy is {@link UnknownFieldPolicy#FAIL}.
+     */
+    private void readUnknownField(ByteBuffer inputBuffer, int fieldStart, int wireType, int fieldNumber,
+                                  Map<String, Object> resultMap) {
+        if (unknownFieldPolicy == UnknownFieldPolicy.FAIL) {
+            throw new IllegalArgumentException("Unknown field number: " + fieldNumber);
+        }
+        skipField(inputBuffer, wireType, fieldNumber);
+        if (unknownFieldPolicy == UnknownFieldPolicy.PRESERVE) {
+            ByteBuffer rawField = inputBuffer.duplicate();
+            rawField.position(fieldStart);
+            rawField.limit(inputBuffer.position());
+            List<ByteBuffer> unknownFields = (List<ByteBuffer>) resultMap.computeIfAbsent(
+                    UNKNOWN_FIELDS_KEY,
+                    k -> new ArrayList<ByteBuffer>());
+            unknownFields.add(copyBytes ? copy(rawField.slice()) : rawField.slice().asReadOnlyBuffer());
+        }
+    }
+
+    /**
+     * Moves a buffer past a field's value without decoding it.
+     *
+     * @param byteBuffer The ByteBuffer positioned just after the field's tag.
+     * @param wireType The field's wire type.
+     * @param fieldNumber The field's number, used to find the end of a group.
+     * @throws UnsupportedOperationException If the wire type is unknown.
+     */
+    private static void skipField(ByteBuffer byteBuffer, int wireType, int fieldNumber) {
+        switch (wireType) {
+            case 0: // Varint
+                readVarint(byteBuffer);
+                break;
+            case 1: // Fixed64
+                skipBytes(byteBuffer, Long.BYTES);
+                break;
+            case 2: // Length-Delimited
+                skipBytes(byteBuffer, (int) readVarint(byteBuffer));
+                break;
+            case 3: // Start group: skip the group's fields up to its end group tag
+                while (true) {
+                    int key = (int) readVarint(byteBuffer);
+                    if ((key & 0x07) == 4) {
+                        if (key >>> 3 != fieldNumber) {
+                            throw new IllegalArgumentException("Mismatched end group for field number: "
+                                    + fieldNumber);
                         }
+                        return;
                     }
-                    break;
-                case 5: // Fixed32, SFixed32, Float
-                    int rawFixed32Value = inputBuffer.order(ByteOrder.LITTLE_ENDIAN).getInt();
-                    switch (fieldDescriptor.getType()) {
-                        case FLOAT:
-                            value = Float.intBitsToFloat(rawFixed32Value);
-                            break;
-                        case FIXED32:
-                            value = Long.valueOf(rawFixed32Value);
-                            break;
-                        case SFIXED32:
-                            value = rawFixed32Value;
-                            break;
-                        default:
-                            throw new UnsupportedOperationException("Unsupported type: " + fieldDescriptor.getType());
+                    skipField(byteBuffer, key & 0x07, key >>> 3);
+                }
+            case 5: // Fixed32
+                skipBytes(byteBuffer, Integer.BYTES);
+                break;
+            default:
+                throw new UnsupportedOperationException("Unsupported wire type: " + wireType);
+        }
+    }
+
+    /**
+     * Groups field paths by their first segment. A path with a single segment maps its field to an empty
+     * remainder, which reads the whole field.
+     *
+     * @param fieldPaths Dot-separated field paths.
+     * @return The remainders of the paths, keyed by their first segment.
+     */
+    private static Map<String, List<String>> groupPaths(Collection<String> fieldPaths) {
+        Map<String, List<String>> grouped = new HashMap<>();
+        for (String fieldPath : fieldPaths) {
+            int dot = fieldPath.indexOf('.');
+            String fieldName = dot < 0 ? fieldPath : fieldPath.substring(0, dot);
+            String remainder = dot < 0 ? "" : fieldPath.substring(dot + 1);
+            grouped.computeIfAbsent(fieldName, k -> new ArrayList<>()).add(remainder);
+        }
+        return grouped;
+    }
+
+    /**
+     * Returns the compiled plan for a message type, compiling and caching it on first use.
+     *
+     * @param descriptor The Descriptor of the message type.
+     * @return The plan for the message type.
+     */
+    private MessagePlan getMessagePlan(Descriptor descriptor) {
+        MessagePlan plan = messagePlans.get(descriptor);
+        if (plan == null) {
+            plan = messagePlans.computeIfAbsent(descriptor, d -> new MessagePlan(d, populateDefaults, null));
+        }
+        return plan;
+    }
+
+    /**
+     * Converts a varint to the Java value for a field's type.
+     *
+     * @param field The field the value belongs to.
+     * @param rawValue The varint.
+     * @return The field value.
+     * @throws IllegalArgumentException If the value is an unknown enum number.
+     */
+    private static Object convertVarint(FieldPlan field, long rawValue) {
+        switch (field.type) {
+            case BOOL:
+                return rawValue != 0;
+            case INT32:
+                return (int) rawValue;
+            case SINT32:
+                return decodeZigZag32((int) rawValue);
+            case SINT64:
+                return decodeZigZag64(rawValue);
+            case ENUM:
+                Descriptors.EnumValueDescriptor enumValueDescriptor =
+                        field.descriptor.getEnumType().findValueByNumber((int) rawValue);
+                if (enumValueDescriptor == null) {
+                    throw new IllegalArgumentException("Unknown enum value: " + rawValue
+                            + " for field number: " + field.descriptor.getNumber());
+                }
+                return enumValueDescriptor.getName();
+            case UINT32:
+            case FIXED32:
+                return rawValue & 0xFFFFFFFFL; // convert to long treating as unsigned
+            case UINT64:
+            case FIXED64:
+                return toUnsignedBigInteger(rawValue);
+            default:
+                return rawValue;
+        }
+    }
+
+    /**
+     * Converts a 64-bit fixed-width value to the Java value for a field's type.
+     *
+     * @param field The field the value belongs to.
+     * @param rawValue The fixed-width value.
+     * @return The field value.
+     * @throws UnsupportedOperationException If the field's type isn't a 64-bit fixed-width type.
+     */
+    private static Object convertFixed64(FieldPlan field, long rawValue) {
+        switch (field.type) {
+            case DOUBLE:
+                return Double.longBitsToDouble(rawValue);
+            case FIXED64:
+                return toUnsignedBigInteger(rawValue);
+            case SFIXED64:
+                return rawValue;
+            default:
+                throw new UnsupportedOperationException("Unsupported type: " + field.type);
+        }
+    }
+
+    /**
+     * Converts a 32-bit fixed-width value to the Java value for a field's type.
+     *
+     * @param field The field the value belongs to.
+     * @param rawValue The fixed-width value.
+     * @return The field value.
+     * @throws UnsupportedOperationException If the field's type isn't a 32-bit fixed-width type.
+     */
+    private static Object convertFixed32(FieldPlan field, int rawValue) {
+        switch (field.type) {
+            case FLOAT:
+                return Float.intBitsToFloat(rawValue);
+            case FIXED32:
+                return rawValue & 0xFFFFFFFFL; // convert to long treating as unsigned
+            case SFIXED32:
+                return rawValue;
+            default:
+                throw new UnsupportedOperationException("Unsupported type: " + field.type);
+        }
+    }
+
+    /**
+     * Reads the elements of a packed repeated field and appends them to the field's list. Packed and unpacked
+     * encodings of the same field may be mixed, so elements are added to any list already read for the field.
+     *
+     * @param packed The buffer holding the packed elements.
+     * @param field The repeated field.
+     * @param resultMap The result Map.
+     * @param recycled Emptied containers of repeated and map fields to reuse, keyed by field name, or null.
+     * @throws IllegalArgumentException If the packed bytes end in the middle of an element.
+     */
+    private static void readPacked(ByteBuffer packed, FieldPlan field, Map<String, Object> resultMap,
+                                   Map<String, Object> recycled) {
+        FieldDescriptor.Type type = field.type;
+        int count;
+        switch (type) {
+            case DOUBLE:
+            case FIXED64:
+            case SFIXED64:
+                count = packed.remaining() / Long.BYTES;
+                break;
+            case FLOAT:
+            case FIXED32:
+            case SFIXED32:
+                count = packed.remaining() / Integer.BYTES;
+                break;
+            default:
+                // Every varint ends with exactly one byte that has its high bit clear.
+                count = 0;
+                for (int i = packed.position(); i < packed.limit(); i++) {
+                    if (packed.get(i) >= 0) {
+                        count++;
                     }
-                    addToResultMap(resultMap, fieldName, value, fieldDescriptor.isRepeated(), isOneof);
-                    break;
-                default:
-                    throw new UnsupportedOperationException("Unsupported wire type: " + wireType);
-            }
+                }
+                break;
         }
 
-        return resultMap;
+        List<?> values = getRepeatedList(resultMap, field, count, recycled);
+        if (values instanceof IntList) {
+            IntList ints = (IntList) values;
+            for (int i = 0; i < count; i++) {
+                switch (type) {
+                    case SFIXED32:
+                        ints.addInt(readFixed32(packed));
+                        break;
+                    case SINT32:
+                        ints.addInt(decodeZigZag32((int) readVarint(packed)));
+                        break;
+                    default:
+                        ints.addInt((int) readVarint(packed));
+                        break;
+                }
+            }
+        } else if (values instanceof LongList) {
+            LongList longs = (LongList) values;
+            for (int i = 0; i < count; i++) {
+                switch (type) {
+                    case SFIXED64:
+                        longs.addLong(readFixed64(packed));
+                        break;
+                    case FIXED32:
+                        longs.addLong(readFixed32(packed) & 0xFFFFFFFFL);
+                        break;
+                    case UINT32:
+                        longs.addLong(readVarint(packed) & 0xFFFFFFFFL);
+                        break;
+                    case SINT64:
+                        longs.addLong(decodeZigZag64(readVarint(packed)));
+                        break;
+                    default:
+                        longs.addLong(readVarint(packed));
+                        break;
+                }
+            }
+        } else if (values instanceof DoubleList) {
+            DoubleList doubles = (DoubleList) values;
+            for (int i = 0; i < count; i++) {
+                doubles.addDouble(Double.longBitsToDouble(readFixed64(packed)));
+            }
+        } else if (values instanceof FloatList) {
+            FloatList floats = (FloatList) values;
+            for (int i = 0; i < count; i++) {
+                floats.addFloat(Float.intBitsToFloat(readFixed32(packed)));
+            }
+        } else {
+            @SuppressWarnings("unchecked")
+            List<Object> objects = (List<Object>) values;
+            for (int i = 0; i < count; i++) {
+                if (type == FieldDescriptor.Type.FIXED64) {
+                    objects.add(convertFixed64(field, readFixed64(packed)));
+                } else {
+                    objects.add(convertVarint(field, readVarint(packed)));
+                }
+            }
+        }
+        if (packed.hasRemaining()) {
+            throw new IllegalArgumentException("Malformed packed field " + field.name + ": " + packed.remaining()
+                    + " trailing bytes");
+        }
     }
 
     /**
      * Adds a field value to the result Map, handling repeated and oneof fields.
      *
      * @param resultMap The result Map.
-     * @param fieldName The name of the field.
+     * @param field The field the value belongs to.
      * @param value The value of the field.
-     * @param isRepeated Whether the field is a repeated field.
-     * @param isOneof Whether the field is part of a oneof.
+     * @param recycled Emptied containers of repeated and map fields to reuse, keyed by field name, or null.
      */
-    private static void addToResultMap(Map<String, Object> resultMap, String fieldName, Object value,
-                                       boolean isRepeated, boolean isOneof) {
-        if (isOneof || !isRepeated) {
-            resultMap.put(fieldName, value);
+    private static void addToResultMap(Map<String, Object> resultMap, FieldPlan field, Object value,
+                                       Map<String, Object> recycled) {
+        if (field.oneof || !field.repeated) {
+            resultMap.put(field.name, value);
         } else {
-            if (resultMap.containsKey(fieldName)) {
-                @SuppressWarnings("unchecked")
-                List<Object> values = (List<Object>) resultMap.get(fieldName);
-                values.add(value);
-            } else {
-                List<Object> values = new ArrayList<>();
-                values.add(value);
-                resultMap.put(fieldName, values);
-            }
+            @SuppressWarnings("unchecked")
+            List<Object> values = (List<Object>) getRepeatedList(resultMap, field, 1, recycled);
+            values.add(value);
+        }
+    }
+
+    /**
+     * Returns the list holding a repeated field's values, taking a recycled list or creating one if this is the
+     * field's first value. Numeric fields whose values are ints, longs, floats or doubles are kept in lists backed
+     * by primitive arrays.
+     *
+     * @param resultMap The result Map.
+     * @param field The repeated field.
+     * @param expectedAdditions The number of values about to be added, used to size the list.
+     * @param recycled Emptied containers of repeated and map fields to reuse, keyed by field name, or null.
+     * @return The list holding the field's values.
+     */
+    private static List<?> getRepeatedList(Map<String, Object> resultMap, FieldPlan field, int expectedAdditions,
+                                           Map<String, Object> recycled) {
+        List<?> values = (List<?>) resultMap.get(field.name);
+        if (values != null) {
+            return values;
+        }
+        values = recycled == null ? null : (List<?>) recycled.remove(field.name);
+        if (values != null) {
+            resultMap.put(field.name, values);
+            return values;
+        }
+        switch (field.type) {
+            case INT32:
+            case SINT32:
+            case SFIXED32:
+                values = new IntList(expectedAdditions);
+                break;
+            case INT64:
+            case SINT64:
+            case SFIXED64:
+            case UINT32:
+            case FIXED32:
+                values = new LongList(expectedAdditions);
+                break;
+            case DOUBLE:
+                values = new DoubleList(expectedAdditions);
+                break;
+            case FLOAT:
+                values = new FloatList(expectedAdditions);
+                break;
+            default:
+                values = new ArrayList<>(expectedAdditions);
+                break;
+        }
+        resultMap.put(field.name, values);
+        return values;
+    }
+
+    /**
+     * Returns a view of the next bytes of a buffer and moves the buffer's position past them. The view shares
+     * the buffer's content, so nested messages, strings and bytes are decoded without copying.
+     *
+     * @param byteBuffer The ByteBuffer to take the bytes from.
+     * @param length The number of bytes in the view.
+     * @return A view of the next length bytes, with its position at zero.
+     * @throws java.nio.BufferUnderflowException If fewer than length bytes remain.
+     */
+    private static ByteBuffer slice(ByteBuffer byteBuffer, int length) {
+        if (length < 0 || length > byteBuffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        ByteBuffer slice = byteBuffer.slice();
+        slice.limit(length);
+        byteBuffer.position(byteBuffer.position() + length);
+        return slice;
+    }
+
+    /**
+     * Copies the remaining bytes of a buffer into a new read-only buffer.
+     *
+     * @param byteBuffer The ByteBuffer holding the bytes.
+     * @return A read-only buffer over a copy of the bytes.
+     */
+    private static ByteBuffer copy(ByteBuffer byteBuffer) {
+        byte[] bytes = new byte[byteBuffer.remaining()];
+        byteBuffer.get(bytes);
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    /**
+     * Moves a buffer's position past its next bytes.
+     *
+     * @param byteBuffer The ByteBuffer to skip bytes in.
+     * @param length The number of bytes to skip.
+     * @throws java.nio.BufferUnderflowException If fewer than length bytes remain.
+     */
+    private static void skipBytes(ByteBuffer byteBuffer, int length) {
+        if (length < 0 || length > byteBuffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byteBuffer.position(byteBuffer.position() + length);
+    }
+
+    /**
+     * Decodes the remaining bytes of a buffer as a UTF-8 string, straight from the backing array when there is
+     * one.
+     *
+     * @param byteBuffer The ByteBuffer holding the string's bytes.
+     * @return The decoded string.
+     */
+    private static String readString(ByteBuffer byteBuffer) {
+        if (byteBuffer.hasArray()) {
+            return new String(byteBuffer.array(), byteBuffer.arrayOffset() + byteBuffer.position(),
+                    byteBuffer.remaining(), StandardCharsets.UTF_8);
         }
+        int length = byteBuffer.remaining();
+        byte[] scratch = length <= MAX_SCRATCH_SIZE ? STRING_SCRATCH.get() : new byte[length];
+        byteBuffer.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
     }
 
     /**
      * Reads a varint from a ByteBuffer and converts it to a long.
+     * <p>
+     * When at least eight bytes remain, the varint is decoded from a single little-endian long: the first byte
+     * with its high bit clear marks the end of the varint, and the 7-bit groups before it are packed together
+     * without a loop. Varints longer than eight bytes, and varints near the end of the buffer, are read a byte
+     * at a time.
      *
      * @param byteBuffer The ByteBuffer to read from.
      * @return The varint as a long.
      */
     private static long readVarint(ByteBuffer byteBuffer) {
+        int position = byteBuffer.position();
+        if (byteBuffer.limit() - position >= Long.BYTES) {
+            byte firstByte = byteBuffer.get(position);
+            if (firstByte >= 0) {
+                byteBuffer.position(position + 1);
+                return firstByte;
+            }
+            long word = (long) LONG_LITTLE_ENDIAN.get(byteBuffer, position);
+            long terminators = ~word & 0x8080808080808080L;
+            if (terminators != 0) {
+                // Keep the bytes up to and including the first terminator, then drop each byte's high bit.
+                long bytes = word & (terminators ^ (terminators - 1));
+                byteBuffer.position(position + ((Long.numberOfTrailingZeros(terminators) + 1) >>> 3));
+                return (bytes & 0x7FL)
+                        | ((bytes >>> 1) & (0x7FL << 7))
+                        | ((bytes >>> 2) & (0x7FL << 14))
+                        | ((bytes >>> 3) & (0x7FL << 21))
+                        | ((bytes >>> 4) & (0x7FL << 28))
+                        | ((bytes >>> 5) & (0x7FL << 35))
+                        | ((bytes >>> 6) & (0x7FL << 42))
+                        | ((bytes >>> 7) & (0x7FL << 49));
+            }
+        }
+        return readVarintSlowly(byteBuffer);
+    }
+
+    /**
+     * Reads a varint from a ByteBuffer one byte at a time.
+     *
+     * @param byteBuffer The ByteBuffer to read from.
+     * @return The varint as a long.
+     */
+    private static long readVarintSlowly(ByteBuffer byteBuffer) {
         long result = 0;
         int shift = 0;
         int currentByte;
@@ -229,6 +851,54 @@ public class ProtoReader {
         return result;
     }
 
+    /**
+     * Reads a little-endian 64-bit value from a ByteBuffer without changing the buffer's byte order.
+     *
+     * @param byteBuffer The ByteBuffer to read from.
+     * @return The value.
+     * @throws BufferUnderflowException If fewer than eight bytes remain.
+     */
+    private static long readFixed64(ByteBuffer byteBuffer) {
+        int position = byteBuffer.position();
+        if (byteBuffer.limit() - position < Long.BYTES) {
+            throw new BufferUnderflowException();
+        }
+        long value = (long) LONG_LITTLE_ENDIAN.get(byteBuffer, position);
+        byteBuffer.position(position + Long.BYTES);
+        return value;
+    }
+
+    /**
+     * Reads a little-endian 32-bit value from a ByteBuffer without changing the buffer's byte order.
+     *
+     * @param byteBuffer The ByteBuffer to read from.
+     * @return The value.
+     * @throws BufferUnderflowException If fewer than four bytes remain.
+     */
+    private static int readFixed32(ByteBuffer byteBuffer) {
+        int position = byteBuffer.position();
+        if (byteBuffer.limit() - position < Integer.BYTES) {
+            throw new BufferUnderflowException();
+        }
+        int value = (int) INT_LITTLE_ENDIAN.get(byteBuffer, position);
+        byteBuffer.position(position + Integer.BYTES);
+        return value;
+    }
+
+    /**
+     * Converts a long holding an unsigned 64-bit value to a BigInteger. Values below 2^63 skip the sign handling,
+     * and BigInteger caches the smallest of them.
+     *
+     * @param value The unsigned value.
+     * @return The value as a non-negative BigInteger.
+     */
+    private static BigInteger toUnsignedBigInteger(long value) {
+        if (value >= 0) {
+            return BigInteger.valueOf(value);
+        }
+        return BigInteger.valueOf(value & Long.MAX_VALUE).setBit(Long.SIZE - 1);
+    }
+
     /**
      * Decodes a ZigZag-encoded 32-bit integer.
      *
@@ -248,4 +918,476 @@ public class ProtoReader {
     private static long decodeZigZag64(long n) {
         return (n >>> 1) ^ -(n & 1);
     }
+
+    /**
+     * A builder for {@link ProtoReader} options. Builders are not thread-safe, but the readers they build are.
+     */
+    public static final class Builder {
+        private boolean populateDefaults = true;
+        private UnknownFieldPolicy unknownFieldPolicy = UnknownFieldPolicy.SKIP;
+        private boolean copyBytes;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets whether result maps are pre-populated with the default values of fields that declare one, so that
+         * absent fields read as their default. Enabled by default; disable it to get only the fields present on
+         * the wire.
+         *
+         * @param populateDefaults Whether to pre-populate default values.
+         * @return This builder.
+         */
+        public Builder populateDefaults(boolean populateDefaults) {
+            this.populateDefaults = populateDefaults;
+            return this;
+        }
+
+        /**
+         * Sets what the reader does with fields whose numbers aren't in the message's descriptor, such as fields
+         * added by a newer producer. Defaults to {@link UnknownFieldPolicy#SKIP}.
+         *
+         * @param unknownFieldPolicy The policy for unknown fields.
+         * @return This builder.
+         */
+        public Builder unknownFieldPolicy(UnknownFieldPolicy unknownFieldPolicy) {
+            this.unknownFieldPolicy = Objects.requireNonNull(unknownFieldPolicy);
+            return this;
+        }
+
+        /**
+         * Sets whether bytes fields, and unknown fields kept by {@link UnknownFieldPolicy#PRESERVE}, are copied
+         * out of the input buffer. By default they are read-only views of the input buffer, which is cheaper but
+         * keeps the buffer reachable and shows any later changes to its content. Enable copying when the input
+         * buffer is reused, as {@link ProtoDelimitedReader} does.
+         *
+         * @param copyBytes Whether to copy bytes fields and preserved unknown fields.
+         * @return This builder.
+         */
+        public Builder copyBytes(boolean copyBytes) {
+            this.copyBytes = copyBytes;
+            return this;
+        }
+
+        /**
+         * Builds a {@link ProtoReader} with this builder's options.
+         *
+         * @return A new reader.
+         */
+        public ProtoReader build() {
+            return new ProtoReader(this);
+        }
+    }
+
+    /**
+     * What a {@link ProtoReader} does with fields whose numbers aren't in the message's descriptor.
+     */
+    public enum UnknownFieldPolicy {
+        /**
+         * Throw an {@link IllegalArgumentException}.
+         */
+        FAIL,
+
+        /**
+         * Skip the field by its wire type.
+         */
+        SKIP,
+
+        /**
+         * Skip the field, and keep its tag and value bytes as a read-only ByteBuffer in a list under
+         * {@link #UNKNOWN_FIELDS_KEY}, in the order they were read.
+         */
+        PRESERVE
+    }
+
+    /**
+     * A compiled projection of a message type that reads only some of its fields. Created by
+     * {@link ProtoReader#project(Descriptor, Collection)}.
+     */
+    public static final class Projection {
+        private final ProtoReader reader;
+        private final MessagePlan plan;
+
+        private Projection(ProtoReader reader, MessagePlan plan) {
+            this.reader = reader;
+            this.plan = plan;
+        }
+
+        /**
+         * Reads the projected fields of a Protocol Buffers message from a ByteBuffer.
+         *
+         * @param inputBuffer The ByteBuffer containing the Protocol Buffers message.
+         * @return A Map holding the projected fields that are present in the message.
+         */
+        public Map<String, Object> read(ByteBuffer inputBuffer) {
+            return reader.readMessage(inputBuffer, plan);
+        }
+    }
+
+    /**
+     * A read plan for a message type. It holds the message's fields indexed by field number, its default values
+     * and the initial capacity that lets the result map hold every field without rehashing.
+     */
+    private static final class MessagePlan {
+        private final FieldPlan[] denseFields;
+        private final int[] sparseNumbers;
+        private final FieldPlan[] sparseFields;
+        private final Map<String, FieldPlan> fieldsByName;
+        private final String[] defaultNames;
+        private final Object[] defaultValues;
+        private final int capacity;
+
+        /**
+         * Compiles a plan for a message type.
+         *
+         * @param descriptor The Descriptor of the message type.
+         * @param populateDefaults Whether to pre-populate default values.
+         * @param projection The remaining field paths to read, grouped by field name, or null to read every field.
+         */
+        MessagePlan(Descriptor descriptor, boolean populateDefaults, Map<String, List<String>> projection) {
+            if (projection != null) {
+                for (String fieldName : projection.keySet()) {
+                    if (descriptor.findFieldByName(fieldName) == null) {
+                        throw new IllegalArgumentException("Unknown field " + fieldName + " in "
+                                + descriptor.getFullName());
+                    }
+                }
+            }
+
+            List<FieldDescriptor> fields = descriptor.getFields();
+            int maxDenseNumber = 0;
+            int sparseCount = 0;
+            int readCount = 0;
+            int defaultCount = 0;
+            for (FieldDescriptor fieldDescriptor : fields) {
+                if (fieldDescriptor.getNumber() < MAX_DENSE_FIELD_NUMBER) {
+                    maxDenseNumber = Math.max(maxDenseNumber, fieldDescriptor.getNumber());
+                } else {
+                    sparseCount++;
+                }
+                if (projection == null || projection.containsKey(fieldDescriptor.getName())) {
+                    readCount++;
+                    if (populateDefaults && fieldDescriptor.hasDefaultValue()) {
+                        defaultCount++;
+                    }
+                }
+            }
+
+            this.denseFields = new FieldPlan[maxDenseNumber + 1];
+            this.sparseNumbers = new int[sparseCount];
+            this.sparseFields = new FieldPlan[sparseCount];
+            this.fieldsByName = new HashMap<>((int) (fields.size() / 0.75f) + 1);
+            this.defaultNames = new String[defaultCount];
+            this.defaultValues = new Object[defaultCount];
+
+            // Fields are sorted by number, so the sparse arrays come out sorted for binary search.
+            List<FieldDescriptor> byNumber = new ArrayList<>(fields);
+            byNumber.sort((a, b) -> Integer.compare(a.getNumber(), b.getNumber()));
+            int sparseIndex = 0;
+            int defaultIndex = 0;
+            for (FieldDescriptor fieldDescriptor : byNumber) {
+                FieldPlan field = compileField(fieldDescriptor, populateDefaults, projection);
+                fieldsByName.put(field.name, field);
+                if (fieldDescriptor.getNumber() < MAX_DENSE_FIELD_NUMBER) {
+                    denseFields[fieldDescriptor.getNumber()] = field;
+                } else {
+                    sparseNumbers[sparseIndex] = fieldDescriptor.getNumber();
+                    sparseFields[sparseIndex++] = field;
+                }
+                if (!field.skipped && populateDefaults && fieldDescriptor.hasDefaultValue()) {
+                    defaultNames[defaultIndex] = field.name;
+                    defaultValues[defaultIndex++] = fieldDescriptor.getDefaultValue();
+                }
+            }
+            this.capacity = (int) (readCount / 0.75f) + 1;
+        }
+
+        /**
+         * Compiles the plan for one field of a message, applying the message's projection.
+         *
+         * @param fieldDescriptor The field.
+         * @param populateDefaults Whether to pre-populate default values.
+         * @param projection The remaining field paths to read, grouped by field name, or null to read every field.
+         * @return The field's plan.
+         * @throws IllegalArgumentException If the projection continues past a field that isn't a message or is
+         * a map.
+         */
+        private static FieldPlan compileField(FieldDescriptor fieldDescriptor, boolean populateDefaults,
+                                              Map<String, List<String>> projection) {
+            if (projection == null) {
+                return new FieldPlan(fieldDescriptor, false, null);
+            }
+            List<String> subPaths = projection.get(fieldDescriptor.getName());
+            if (subPaths == null) {
+                return new FieldPlan(fieldDescriptor, true, null);
+            }
+            if (subPaths.contains("")) {
+                return new FieldPlan(fieldDescriptor, false, null);
+            }
+            if (fieldDescriptor.getType() != FieldDescriptor.Type.MESSAGE || fieldDescriptor.isMapField()) {
+                throw new IllegalArgumentException("Can't project into field " + fieldDescriptor.getFullName()
+                        + ", which isn't a message");
+            }
+            MessagePlan nestedPlan = new MessagePlan(fieldDescriptor.getMessageType(), populateDefaults,
+                    groupPaths(subPaths));
+            return new FieldPlan(fieldDescriptor, false, nestedPlan);
+        }
+
+        /**
+         * Returns the plan for a field number.
+         *
+         * @param fieldNumber The field number read from the wire.
+         * @return The field's plan, or null if the message has no such field.
+         */
+        FieldPlan getField(int fieldNumber) {
+            if (fieldNumber >= 0 && fieldNumber < denseFields.length) {
+                return denseFields[fieldNumber];
+            }
+            int index = Arrays.binarySearch(sparseNumbers, fieldNumber);
+            return index >= 0 ? sparseFields[index] : null;
+        }
+    }
+
+    /**
+     * A lazy, read-only Map view over an encoded message, created by
+     * {@link ProtoReader#readLazy(ByteBuffer, Descriptor)}. The constructor scans the message once, recording
+     * each field's tag and position in a compact int array; values are decoded on first access and kept.
+     */
+    private static final class LazyMessage extends AbstractMap<String, Object> {
+        private final ProtoReader reader;
+        private final ByteBuffer buffer;
+        private final MessagePlan plan;
+
+        /**
+         * The tag, tag position and end position of each field on the wire, three ints per field, in wire order.
+         */
+        private int[] fields = new int[3 * 8];
+        private int fieldCount;
+        private boolean hasUnknownFields;
+
+        /**
+         * The keys of the view, computed on first use.
+         */
+        private Set<String> keys;
+
+        /**
+         * The values decoded so far, created on first use.
+         */
+        private Map<String, Object> values;
+
+        LazyMessage(ProtoReader reader, ByteBuffer buffer, MessagePlan plan) {
+            this.reader = reader;
+            this.buffer = buffer;
+            this.plan = plan;
+
+            ByteBuffer scan = buffer.duplicate();
+            while (scan.hasRemaining()) {
+                int fieldStart = scan.position();
+                int key = (int) readVarint(scan);
+                FieldPlan field = plan.getField(key >>> 3);
+                if (field == null && reader.unknownFieldPolicy == UnknownFieldPolicy.FAIL) {
+                    throw new IllegalArgumentException("Unknown field number: " + (key >>> 3));
+                }
+                skipField(scan, key & 0x07, key >>> 3);
+                if (field == null ? reader.unknownFieldPolicy == UnknownFieldPolicy.PRESERVE : !field.skipped) {
+                    hasUnknownFields |= field == null;
+                    if (fieldCount * 3 == fields.length) {
+                        fields = Arrays.copyOf(fields, fields.length * 2);
+                    }
+                    fields[fieldCount * 3] = key;
+                    fields[fieldCount * 3 + 1] = fieldStart;
+                    fields[fieldCount * 3 + 2] = scan.position();
+                    fieldCount++;
+                }
+            }
+        }
+
+        @Override
+        public Object get(Object key) {
+            if (values != null) {
+                Object value = values.get(key);
+                if (value != null) {
+                    return value;
+                }
+            }
+            if (!(key instanceof String)) {
+                return null;
+            }
+            Object value = decode((String) key);
+            if (value != null) {
+                if (values == null) {
+                    values = new HashMap<>();
+                }
+                values.put((String) key, value);
+            }
+            return value;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return keySet().contains(key);
+        }
+
+        @Override
+        public int size() {
+            return keySet().size();
+        }
+
+        @Override
+        public Set<String> keySet() {
+            if (keys == null) {
+                Set<String> keySet = new LinkedHashSet<>();
+                Collections.addAll(keySet, plan.defaultNames);
+                for (int i = 0; i < fieldCount; i++) {
+                    FieldPlan field = plan.getField(fields[i * 3] >>> 3);
+                    keySet.add(field == null ? UNKNOWN_FIELDS_KEY : field.name);
+                }
+                keys = Collections.unmodifiableSet(keySet);
+            }
+            return keys;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    Iterator<String> keyIterator = keySet().iterator();
+                    return new Iterator<>() {
+                        @Override
+                        public boolean hasNext() {
+                            return keyIterator.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            String key = keyIterator.next();
+                            return new SimpleImmutableEntry<>(key, get(key));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return LazyMessage.this.size();
+                }
+            };
+        }
+
+        /**
+         * Decodes a field from the message's bytes.
+         *
+         * @param name The field's name.
+         * @return The field's value, or null if it isn't in the view.
+         */
+        private Object decode(String name) {
+            if (UNKNOWN_FIELDS_KEY.equals(name)) {
+                return hasUnknownFields ? decodeUnknownFields() : null;
+            }
+            FieldPlan field = plan.fieldsByName.get(name);
+            if (field == null || field.skipped) {
+                return null;
+            }
+            int fieldNumber = field.descriptor.getNumber();
+            ByteBuffer view = null;
+            Map<String, Object> fieldValues = null;
+            for (int i = 0; i < fieldCount; i++) {
+                int key = fields[i * 3];
+                if (key >>> 3 == fieldNumber) {
+                    if (view == null) {
+                        view = buffer.duplicate();
+                        fieldValues = new HashMap<>(2);
+                    }
+                    view.limit(fields[i * 3 + 2]);
+                    view.position(fields[i * 3 + 1]);
+                    readVarint(view);
+                    reader.readField(view, field, key & 0x07, fieldValues, true, null);
+                }
+            }
+            if (fieldValues != null) {
+                return fieldValues.get(name);
+            }
+            for (int i = 0; i < plan.defaultNames.length; i++) {
+                if (plan.defaultNames[i].equals(name)) {
+                    return plan.defaultValues[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Collects the raw bytes of the message's unknown fields, as {@link UnknownFieldPolicy#PRESERVE} does.
+         *
+         * @return The unknown fields' bytes, in wire order.
+         */
+        private List<ByteBuffer> decodeUnknownFields() {
+            List<ByteBuffer> unknownFields = new ArrayList<>();
+            for (int i = 0; i < fieldCount; i++) {
+                if (plan.getField(fields[i * 3] >>> 3) == null) {
+                    ByteBuffer rawField = buffer.duplicate();
+                    rawField.limit(fields[i * 3 + 2]);
+                    rawField.position(fields[i * 3 + 1]);
+                    unknownFields.add(reader.copyBytes
+                            ? copy(rawField.slice())
+                            : rawField.slice().asReadOnlyBuffer());
+                }
+            }
+            return unknownFields;
+        }
+    }
+
+    /**
+     * A read plan for a single field, with everything the read loop needs resolved from the descriptor once.
+     */
+    private static final class FieldPlan {
+        private final FieldDescriptor descriptor;
+        private final FieldDescriptor.Type type;
+        private final String name;
+        private final boolean repeated;
+        private final boolean oneof;
+        private final boolean packable;
+        private final boolean mapEntry;
+        private final boolean skipped;
+
+        /**
+         * The plan for the field's message type, resolved on first use because message types may be recursive.
+         * Plans are immutable, so a racing thread at worst looks the same plan up twice.
+         */
+        private MessagePlan messagePlan;
+
+        /**
+         * Compiles a plan for a field.
+         *
+         * @param descriptor The field.
+         * @param skipped Whether a projection leaves the field out, so it is skipped on the wire.
+         * @param messagePlan The plan for the field's message type, or null to resolve it on first use.
+         */
+        FieldPlan(FieldDescriptor descriptor, boolean skipped, MessagePlan messagePlan) {
+            this.descriptor = descriptor;
+            this.skipped = skipped;
+            this.messagePlan = messagePlan;
+            this.type = descriptor.getType();
+            this.name = descriptor.getName().intern();
+            this.repeated = descriptor.isRepeated();
+            this.oneof = descriptor.getContainingOneof() != null;
+            this.packable = descriptor.isPackable();
+            this.mapEntry = type == FieldDescriptor.Type.MESSAGE
+                    && descriptor.getMessageType().getOptions().getMapEntry();
+        }
+
+        /**
+         * Returns the plan for the field's message type.
+         *
+         * @param reader The reader whose plans this field's plan belongs to.
+         * @return The plan for the field's message type.
+         */
+        MessagePlan getMessagePlan(ProtoReader reader) {
+            MessagePlan plan = messagePlan;
+            if (plan == null) {
+                plan = reader.getMessagePlan(descriptor.getMessageType());
+                messagePlan = plan;
+            }
+            return plan;
+        }
+    }
 }
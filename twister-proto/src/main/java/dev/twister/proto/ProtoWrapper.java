@@ -8,6 +8,7 @@ import java.math.BigInteger;
 import java.util.AbstractList;
 import java.util.AbstractMap;
 import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -29,6 +30,34 @@ import java.util.Set;
  * interfaces.
  */
 public class ProtoWrapper {
+
+    /**
+     * Marks a memoized slot whose value hasn't been converted yet.
+     */
+    private static final Object UNCONVERTED = new Object();
+
+    /**
+     * Whether facades remember the values they convert.
+     */
+    private final boolean memoize;
+
+    public ProtoWrapper() {
+        this(false);
+    }
+
+    /**
+     * Creates a wrapper that optionally memoizes converted values.
+     * <p>
+     * A memoizing wrapper converts each field and element at most once per facade and returns the same object
+     * on every later read, so nested facades keep their identity. Memoizing facades aren't meant to be read by
+     * several threads at once.
+     *
+     * @param memoize whether facades should remember the values they convert
+     */
+    public ProtoWrapper(boolean memoize) {
+        this.memoize = memoize;
+    }
+
     public Map<String, Object> wrap(Message message) {
         return new Facade(message);
     }
@@ -107,6 +136,11 @@ public class ProtoWrapper {
         private final List<Descriptors.FieldDescriptor> allFields;
         private int size;
 
+        /**
+         * The converted field values by field index, allocated on first read when memoizing.
+         */
+        private Object[] values;
+
         /**
          * Constructor to create Facade wrapping the protobuf message.
          *
@@ -118,6 +152,29 @@ public class ProtoWrapper {
             this.size = calculateSize();
         }
 
+        /**
+         * Returns the converted value of the field at the given index, converting it only once when memoizing.
+         *
+         * @param index the index of the field in the message's fields
+         * @param field the field descriptor
+         * @return the converted value
+         */
+        private Object getValue(int index, Descriptors.FieldDescriptor field) {
+            if (!memoize) {
+                return convertValue(field, message.getField(field), field.isRepeated());
+            }
+            if (values == null) {
+                values = new Object[allFields.size()];
+                Arrays.fill(values, UNCONVERTED);
+            }
+            Object value = values[index];
+            if (value == UNCONVERTED) {
+                value = convertValue(field, message.getField(field), field.isRepeated());
+                values[index] = value;
+            }
+            return value;
+        }
+
         /**
          * Calculates the size (the number of set fields), taking 'oneof' fields into account.
          *
@@ -180,10 +237,9 @@ public class ProtoWrapper {
                                 field = allFields.get(index);
                             }
 
-                            Object value = message.getField(field);
+                            Object value = getValue(index, field);
                             index++;
-                            return new SimpleImmutableEntry<>(field.getName(),
-                                    convertValue(field, value, field.isRepeated()));
+                            return new SimpleImmutableEntry<>(field.getName(), value);
                         }
                     };
                 }
@@ -213,6 +269,11 @@ public class ProtoWrapper {
         private final Descriptors.FieldDescriptor field;
         private final List<?> list;
 
+        /**
+         * The converted elements by index, allocated on first read when memoizing.
+         */
+        private Object[] values;
+
         FacadeList(Descriptors.FieldDescriptor field, List<?> list) {
             this.field = field;
             this.list = list;
@@ -221,7 +282,19 @@ public class ProtoWrapper {
         @Override
         public Object get(int index) {
             // Pass `false` for the `isRepeated` parameter to handle individual elements correctly
-            return convertValue(field, list.get(index), false);
+            if (!memoize) {
+                return convertValue(field, list.get(index), false);
+            }
+            if (values == null) {
+                values = new Object[list.size()];
+                Arrays.fill(values, UNCONVERTED);
+            }
+            Object value = values[index];
+            if (value == UNCONVERTED) {
+                value = convertValue(field, list.get(index), false);
+                values[index] = value;
+            }
+            return value;
         }
 
         @Override
@@ -0,0 +1,186 @@
+package dev.twister.proto;
+
+import com.github.os72.protobuf.dynamic.DynamicSchema;
+import com.github.os72.protobuf.dynamic.MessageDefinition;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.DynamicMessage;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Pipe;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ProtoDelimitedReaderTest extends TestCase {
+
+    private Descriptor descriptor;
+    private byte[] delimitedBytes;
+
+    @Override
+    protected void setUp() throws Exception {
+        DynamicSchema.Builder schemaBuilder = DynamicSchema.newBuilder();
+        schemaBuilder.setName("DelimitedSchemaDynamic.proto");
+
+        MessageDefinition msgDef = MessageDefinition.newBuilder("Record")
+                .addField("optional", "int32", "id", 1)
+                .addField("optional", "bytes", "payload", 2)
+                .build();
+
+        schemaBuilder.addMessageDefinition(msgDef);
+        descriptor = schemaBuilder.build().getMessageDescriptor("Record");
+
+        // Enough messages to refill the buffer many times, and one larger than the initial buffer.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < 5000; i++) {
+            byte[] payload = new byte[i == 2500 ? 200_000 : i % 100];
+            Arrays.fill(payload, (byte) i);
+            DynamicMessage.newBuilder(descriptor)
+                    .setField(descriptor.findFieldByName("id"), i)
+                    .setField(descriptor.findFieldByName("payload"), ByteString.copyFrom(payload))
+                    .build()
+                    .writeDelimitedTo(out);
+        }
+        delimitedBytes = out.toByteArray();
+    }
+
+    public void testReadInputStream() throws Exception {
+        List<Map<String, Object>> messages = new ArrayList<>();
+        try (ProtoDelimitedReader reader = new ProtoDelimitedReader(
+                new ByteArrayInputStream(delimitedBytes), descriptor)) {
+            while (reader.hasNext()) {
+                messages.add(reader.next());
+            }
+            assertFalse(reader.hasNext());
+        }
+        // Bytes are copied out of the reused buffer, so earlier messages are intact after reading the rest.
+        assertRecords(messages);
+    }
+
+    public void testReadChannelAsStream() throws Exception {
+        ProtoDelimitedReader reader = new ProtoDelimitedReader(
+                Channels.newChannel(new ByteArrayInputStream(delimitedBytes)), descriptor);
+        try (Stream<Map<String, Object>> stream = reader.stream()) {
+            assertEquals(List.of(0, 1, 2), stream.limit(3).map(m -> m.get("id")).collect(Collectors.toList()));
+        }
+    }
+
+    public void testReadMappedFile() throws Exception {
+        Path file = Files.createTempFile("delimited", ".pb");
+        try {
+            Files.write(file, delimitedBytes);
+            List<Map<String, Object>> messages;
+            try (ProtoDelimitedReader reader = ProtoDelimitedReader.mapped(
+                    FileChannel.open(file, StandardOpenOption.READ), descriptor, new ProtoReader())) {
+                messages = reader.stream().collect(Collectors.toList());
+            }
+            assertRecords(messages);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    public void testReadTruncated() throws Exception {
+        byte[] truncated = Arrays.copyOf(delimitedBytes, delimitedBytes.length - 1);
+        ProtoDelimitedReader reader = new ProtoDelimitedReader(new ByteArrayInputStream(truncated), descriptor);
+        try {
+            reader.stream().count();
+            fail("Expected UncheckedIOException");
+        } catch (UncheckedIOException e) {
+            // expected
+        }
+    }
+
+    public void testReadPreservedUnknownFields() throws Exception {
+        // A descriptor without the payload field, so payloads are preserved as unknown fields.
+        DynamicSchema.Builder schemaBuilder = DynamicSchema.newBuilder();
+        schemaBuilder.setName("DelimitedIdOnlyDynamic.proto");
+        schemaBuilder.addMessageDefinition(MessageDefinition.newBuilder("Record")
+                .addField("optional", "int32", "id", 1)
+                .build());
+        Descriptor idOnly = schemaBuilder.build().getMessageDescriptor("Record");
+        ProtoReader protoReader = ProtoReader.builder()
+                .unknownFieldPolicy(ProtoReader.UnknownFieldPolicy.PRESERVE)
+                .copyBytes(true)
+                .build();
+
+        List<Map<String, Object>> messages;
+        try (ProtoDelimitedReader reader = new ProtoDelimitedReader(
+                new ByteArrayInputStream(delimitedBytes), idOnly, protoReader)) {
+            messages = reader.stream().collect(Collectors.toList());
+        }
+        assertEquals(5000, messages.size());
+        for (int i = 1; i < messages.size(); i++) {
+            if (i % 100 == 0) {
+                continue;
+            }
+            List<?> unknownFields = (List<?>) messages.get(i).get(ProtoReader.UNKNOWN_FIELDS_KEY);
+            ByteBuffer rawField = (ByteBuffer) unknownFields.get(0);
+            // The tag, the length and then the payload, still intact after later messages reused the buffer.
+            assertEquals((byte) 0x12, rawField.get(rawField.position()));
+            assertEquals((byte) i, rawField.get(rawField.limit() - 1));
+        }
+    }
+
+    public void testReadOversizedMessage() throws Exception {
+        ProtoDelimitedReader reader = new ProtoDelimitedReader(new ByteArrayInputStream(delimitedBytes), descriptor);
+        reader.setMaxMessageSize(1000);
+        try {
+            reader.stream().count();
+            fail("Expected UncheckedIOException");
+        } catch (UncheckedIOException e) {
+            assertTrue(e.getCause().getMessage().contains("exceeds the maximum of 1000"));
+        }
+
+        // A length whose last byte sets bits above bit 31, which would otherwise be dropped and read as 0.
+        byte[] overflowingLength = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x10};
+        reader = new ProtoDelimitedReader(new ByteArrayInputStream(overflowingLength), descriptor);
+        try {
+            reader.stream().count();
+            fail("Expected UncheckedIOException");
+        } catch (UncheckedIOException e) {
+            assertEquals("Malformed message length", e.getCause().getMessage());
+        }
+    }
+
+    public void testRejectNonBlockingChannel() throws IOException {
+        Pipe pipe = Pipe.open();
+        try {
+            pipe.source().configureBlocking(false);
+            new ProtoDelimitedReader(pipe.source(), descriptor);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        } finally {
+            pipe.source().close();
+            pipe.sink().close();
+        }
+    }
+
+    private static void assertRecords(List<Map<String, Object>> messages) {
+        assertEquals(5000, messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            Map<String, Object> message = messages.get(i);
+            assertEquals(i, message.get("id"));
+            ByteBuffer payload = (ByteBuffer) message.get("payload");
+            assertEquals(i == 2500 ? 200_000 : i % 100, payload.remaining());
+            if (payload.hasRemaining()) {
+                assertEquals((byte) i, payload.get(payload.position()));
+            }
+        }
+    }
+}
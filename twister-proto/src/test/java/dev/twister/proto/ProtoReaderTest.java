@@ -3,16 +3,25 @@ package dev.twister.proto;
 import com.github.os72.protobuf.dynamic.DynamicSchema;
 import com.github.os72.protobuf.dynamic.EnumDefinition;
 import com.github.os72.protobuf.dynamic.MessageDefinition;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.DescriptorProtos;
 import com.google.protobuf.Descriptors;
 import com.google.protobuf.Descriptors.Descriptor;
 import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.WireFormat;
 
 import junit.framework.TestCase;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class ProtoReaderTest extends TestCase {
     public void testRead() throws Exception {
@@ -49,6 +58,32 @@ public class ProtoReaderTest extends TestCase {
         assertEquals(List.of(2147483647, 7), resultMap.get("repeated_field"));
     }
 
+    public void testReadWithoutDefaults() throws Exception {
+        DynamicSchema.Builder schemaBuilder = DynamicSchema.newBuilder();
+        schemaBuilder.setName("DefaultsSchemaDynamic.proto");
+
+        MessageDefinition msgDef = MessageDefinition.newBuilder("DefaultsMessage")
+                .addField("optional", "int32", "int_field", 1, "5")
+                .addField("optional", "string", "str_field", 2, "default")
+                .build();
+
+        schemaBuilder.addMessageDefinition(msgDef);
+        Descriptor descriptor = schemaBuilder.build().getMessageDescriptor("DefaultsMessage");
+
+        DynamicMessage message = DynamicMessage.newBuilder(descriptor)
+                .setField(descriptor.findFieldByName("str_field"), "foo")
+                .build();
+
+        Map<String, Object> withDefaults = new ProtoReader().readMessage(
+                ByteBuffer.wrap(message.toByteArray()), descriptor);
+        assertEquals(Map.of("int_field", 5, "str_field", "foo"), withDefaults);
+        assertEquals(withDefaults, ProtoReader.read(ByteBuffer.wrap(message.toByteArray()), descriptor));
+
+        ProtoReader reader = ProtoReader.builder().populateDefaults(false).build();
+        Map<String, Object> withoutDefaults = reader.readMessage(ByteBuffer.wrap(message.toByteArray()), descriptor);
+        assertEquals(Map.of("str_field", "foo"), withoutDefaults);
+    }
+
     public void testReadOneof() throws Exception {
         // Load the schema from the .proto schema string
         DynamicSchema.Builder schemaBuilder = DynamicSchema.newBuilder();
@@ -132,6 +167,41 @@ public class ProtoReaderTest extends TestCase {
         assertEquals("nested string", nestedResultMap.get("nested_str_field"));
     }
 
+    public void testReadRecursiveMessageWithLargeFieldNumbers() throws Exception {
+        DynamicSchema.Builder schemaBuilder = DynamicSchema.newBuilder();
+        schemaBuilder.setName("RecursiveSchemaDynamic.proto");
+
+        MessageDefinition msgDef = MessageDefinition.newBuilder("TreeNode")
+                .addField("optional", "int32", "value", 1)
+                .addField("optional", "string", "label", 100000)
+                .addField("repeated", "TreeNode", "children", 536870911)
+                .build();
+
+        schemaBuilder.addMessageDefinition(msgDef);
+        Descriptor descriptor = schemaBuilder.build().getMessageDescriptor("TreeNode");
+
+        DynamicMessage leaf = DynamicMessage.newBuilder(descriptor)
+                .setField(descriptor.findFieldByName("value"), 2)
+                .setField(descriptor.findFieldByName("label"), "leaf")
+                .build();
+        DynamicMessage root = DynamicMessage.newBuilder(descriptor)
+                .setField(descriptor.findFieldByName("value"), 1)
+                .addRepeatedField(descriptor.findFieldByName("children"), leaf)
+                .addRepeatedField(descriptor.findFieldByName("children"), leaf)
+                .build();
+
+        // Read twice so the second read runs from the cached plan.
+        for (int i = 0; i < 2; i++) {
+            Map<String, Object> resultMap = ProtoReader.read(ByteBuffer.wrap(root.toByteArray()), descriptor);
+
+            assertEquals(1, resultMap.get("value"));
+            List<Map<String, Object>> children = (List<Map<String, Object>>) resultMap.get("children");
+            assertEquals(2, children.size());
+            assertEquals(2, children.get(1).get("value"));
+            assertEquals("leaf", children.get(1).get("label"));
+        }
+    }
+
     public void testPrimitiveTypes() throws Exception {
         // Load the schema from the .proto schema string
         DynamicSchema.Builder schemaBuilder = DynamicSchema.newBuilder();
@@ -235,4 +305,544 @@ public class ProtoReaderTest extends TestCase {
         // Verify the result
         assertEquals("ENUM_VALUE_2", resultMap.get("enum_field"));
     }
+
+    public void testReadWithoutCopying() throws Exception {
+        DynamicSchema.Builder schemaBuilder = DynamicSchema.newBuilder();
+        schemaBuilder.setName("SliceSchemaDynamic.proto");
+
+        MessageDefinition nestedMsgDef = MessageDefinition.newBuilder("NestedMessage")
+                .addField("optional", "string", "name", 1)
+                .addField("optional", "bytes", "payload", 2)
+                .build();
+
+        MessageDefinition msgDef = MessageDefinition.newBuilder("OuterMessage")
+                .addField("optional", "NestedMessage", "nested", 1)
+                .addField("optional", "string", "label", 2)
+                .build();
+
+        schemaBuilder.addMessageDefinition(nestedMsgDef);
+        schemaBuilder.addMessageDefinition(msgDef);
+        DynamicSchema schema = schemaBuilder.build();
+        Descriptor nestedDescriptor = schema.getMessageDescriptor("NestedMessage");
+        Descriptor outerDescriptor = schema.getMessageDescriptor("OuterMessage");
+
+        DynamicMessage nested = DynamicMessage.newBuilder(nestedDescriptor)
+                .setField(nestedDescriptor.findFieldByName("name"), "caf\u00e9")
+                .setField(nestedDescriptor.findFieldByName("payload"), new byte[]{1, 2, 3})
+                .build();
+        byte[] messageBytes = DynamicMessage.newBuilder(outerDescriptor)
+                .setField(outerDescriptor.findFieldByName("nested"), nested)
+                .setField(outerDescriptor.findFieldByName("label"), "outer")
+                .build()
+                .toByteArray();
+
+        // Read from the middle of a larger array, so the buffer has a non-zero array offset.
+        byte[] backing = new byte[messageBytes.length + 4];
+        System.arraycopy(messageBytes, 0, backing, 2, messageBytes.length);
+        ByteBuffer heapBuffer = ByteBuffer.wrap(backing, 2, messageBytes.length).slice();
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(messageBytes.length);
+        directBuffer.put(messageBytes).flip();
+
+        for (ByteBuffer byteBuffer : List.of(heapBuffer, directBuffer)) {
+            Map<String, Object> resultMap = ProtoReader.read(byteBuffer, outerDescriptor);
+
+            assertEquals("outer", resultMap.get("label"));
+            Map<String, Object> nestedResultMap = (Map<String, Object>) resultMap.get("nested");
+            assertEquals("caf\u00e9", nestedResultMap.get("name"));
+            ByteBuffer payload = (ByteBuffer) nestedResultMap.get("payload");
+            assertTrue(payload.isReadOnly());
+            assertEquals(ByteBuffer.wrap(new byte[]{1, 2, 3}), payload);
+        }
+
+        // The payload is a view of the input, not a copy.
+        ByteBuffer payload = (ByteBuffer) ((Map<String, Object>) ProtoReader.read(heapBuffer.rewind(), outerDescriptor)
+                .get("nested")).get("payload");
+        int index = indexOf(backing, new byte[]{1, 2, 3});
+        backing[index] = 9;
+        assertEquals(9, payload.get(0));
+    }
+
+    public void testReadPackedRepeated() throws Exception {
+        DynamicSchema.Builder schemaBuilder = DynamicSchema.newBuilder();
+        schemaBuilder.setName("PackedSchemaDynamic.proto");
+
+        MessageDefinition msgDef = MessageDefinition.newBuilder("PackedMessage")
+                .addField("repeated", "int32", "int32_field", 1)
+                .addField("repeated", "sint64", "sint64_field", 2)
+                .addField("repeated", "double", "double_field", 3)
+                .addField("repeated", "float", "float_field", 4)
+                .addField("repeated", "bool", "bool_field", 5)
+                .addField("repeated", "fixed32", "fixed32_field", 6)
+                .addField("repeated", "uint64", "uint64_field", 7)
+                .build();
+
+        schemaBuilder.addMessageDefinition(msgDef);
+        Descriptor descriptor = schemaBuilder.build().getMessageDescriptor("PackedMessage");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+        // An unpacked element before the packed ones: parsers must accept both encodings and concatenate them.
+        out.writeInt32(1, 7);
+        out.writeTag(1, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(CodedOutputStream.computeInt32SizeNoTag(300) + CodedOutputStream.computeInt32SizeNoTag(-1));
+        out.writeInt32NoTag(300);
+        out.writeInt32NoTag(-1);
+        out.writeTag(2, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(CodedOutputStream.computeSInt64SizeNoTag(-5) + CodedOutputStream.computeSInt64SizeNoTag(5));
+        out.writeSInt64NoTag(-5);
+        out.writeSInt64NoTag(5);
+        out.writeTag(3, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(16);
+        out.writeDoubleNoTag(1.5);
+        out.writeDoubleNoTag(-2.25);
+        out.writeTag(4, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(4);
+        out.writeFloatNoTag(0.5f);
+        out.writeTag(5, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(2);
+        out.writeBoolNoTag(true);
+        out.writeBoolNoTag(false);
+        out.writeTag(6, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(4);
+        out.writeFixed32NoTag(-1);
+        out.writeTag(7, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(CodedOutputStream.computeUInt64SizeNoTag(-1L));
+        out.writeUInt64NoTag(-1L);
+        out.flush();
+
+        Map<String, Object> resultMap = ProtoReader.read(ByteBuffer.wrap(bytes.toByteArray()), descriptor);
+
+        assertEquals(List.of(7, 300, -1), resultMap.get("int32_field"));
+        assertTrue(resultMap.get("int32_field") instanceof PrimitiveList.IntList);
+        assertTrue(Arrays.equals(new int[]{7, 300, -1}, ((PrimitiveList.IntList) resultMap.get("int32_field")).toIntArray()));
+        assertEquals(List.of(-5L, 5L), resultMap.get("sint64_field"));
+        assertTrue(resultMap.get("sint64_field") instanceof PrimitiveList.LongList);
+        assertEquals(List.of(1.5, -2.25), resultMap.get("double_field"));
+        assertEquals(-2.25, ((PrimitiveList.DoubleList) resultMap.get("double_field")).getDouble(1));
+        assertEquals(List.of(0.5f), resultMap.get("float_field"));
+        assertEquals(List.of(true, false), resultMap.get("bool_field"));
+        assertEquals(List.of(4294967295L), resultMap.get("fixed32_field"));
+        assertEquals(List.of(new BigInteger("18446744073709551615")), resultMap.get("uint64_field"));
+
+        // The same values, encoded unpacked by the protobuf library, read back the same.
+        DynamicMessage message = DynamicMessage.parseFrom(descriptor, bytes.toByteArray());
+        assertEquals(resultMap, ProtoReader.read(ByteBuffer.wrap(message.toByteArray()), descriptor));
+    }
+
+    public void testReadMalformedPackedRepeated() throws Exception {
+        DynamicSchema.Builder schemaBuilder = DynamicSchema.newBuilder();
+        schemaBuilder.setName("MalformedPackedSchemaDynamic.proto");
+
+        MessageDefinition msgDef = MessageDefinition.newBuilder("PackedMessage")
+                .addField("repeated", "int32", "int32_field", 1)
+                .addField("repeated", "float", "float_field", 2)
+                .build();
+
+        schemaBuilder.addMessageDefinition(msgDef);
+        Descriptor descriptor = schemaBuilder.build().getMessageDescriptor("PackedMessage");
+
+        // A varint run ending in a continuation byte, and a float run one byte short of two floats.
+        byte[][] malformed = {
+            {0x0A, 0x02, 0x01, (byte) 0x80},
+            {0x12, 0x07, 0, 0, 0, 0, 0, 0, 0},
+        };
+        for (byte[] bytes : malformed) {
+            try {
+                ProtoReader.read(ByteBuffer.wrap(bytes), descriptor);
+                fail("Expected IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    public void testReadVarintsAndFixedWidthValues() throws Exception {
+        DynamicSchema.Builder schemaBuilder = DynamicSchema.newBuilder();
+        schemaBuilder.setName("VarintSchemaDynamic.proto");
+
+        MessageDefinition msgDef = MessageDefinition.newBuilder("VarintMessage")
+                .addField("repeated", "int64", "int64_field", 1)
+                .addField("optional", "fixed64", "fixed64_field", 2)
+                .addField("optional", "sfixed32", "sfixed32_field", 3)
+                .addField("repeated", "uint64", "uint64_field", 4)
+                .build();
+
+        schemaBuilder.addMessageDefinition(msgDef);
+        Descriptor descriptor = schemaBuilder.build().getMessageDescriptor("VarintMessage");
+
+        // Every varint length from one to ten bytes, so both the word-at-a-time and byte-at-a-time paths run.
+        List<Long> longs = List.of(0L, 1L, 127L, 128L, 16383L, 16384L, (1L << 49) - 1, 1L << 49, (1L << 56) - 1,
+                1L << 56, Long.MAX_VALUE, Long.MIN_VALUE, -1L);
+        DynamicMessage.Builder builder = DynamicMessage.newBuilder(descriptor);
+        for (Long value : longs) {
+            builder.addRepeatedField(descriptor.findFieldByName("int64_field"), value);
+        }
+        builder.setField(descriptor.findFieldByName("fixed64_field"), -2L);
+        builder.setField(descriptor.findFieldByName("sfixed32_field"), -3);
+        builder.addRepeatedField(descriptor.findFieldByName("uint64_field"), 5L);
+        builder.addRepeatedField(descriptor.findFieldByName("uint64_field"), -1L);
+        byte[] bytes = builder.build().toByteArray();
+
+        ByteBuffer heapBuffer = ByteBuffer.wrap(bytes);
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(bytes.length);
+        directBuffer.put(bytes).flip();
+        for (ByteBuffer byteBuffer : List.of(heapBuffer, directBuffer)) {
+            Map<String, Object> resultMap = ProtoReader.read(byteBuffer, descriptor);
+
+            assertEquals(longs, resultMap.get("int64_field"));
+            assertEquals(new BigInteger("18446744073709551614"), resultMap.get("fixed64_field"));
+            assertEquals(-3, resultMap.get("sfixed32_field"));
+            assertEquals(List.of(BigInteger.valueOf(5), new BigInteger("18446744073709551615")),
+                    resultMap.get("uint64_field"));
+            assertEquals(ByteOrder.BIG_ENDIAN, byteBuffer.order());
+            assertFalse(byteBuffer.hasRemaining());
+        }
+    }
+
+    public void testReadUnknownFields() throws Exception {
+        DynamicSchema.Builder schemaBuilder = DynamicSchema.newBuilder();
+        schemaBuilder.setName("UnknownFieldsSchemaDynamic.proto");
+
+        MessageDefinition oldDef = MessageDefinition.newBuilder("OldMessage")
+                .addField("optional", "int32", "id", 1)
+                .build();
+        MessageDefinition newDef = MessageDefinition.newBuilder("NewMessage")
+                .addField("optional", "int32", "id", 1)
+                .addField("optional", "int64", "added_varint", 2)
+                .addField("optional", "double", "added_double", 3)
+                .addField("optional", "string", "added_string", 4)
+                .addField("optional", "float", "added_float", 5)
+                .build();
+
+        schemaBuilder.addMessageDefinition(oldDef);
+        schemaBuilder.addMessageDefinition(newDef);
+        DynamicSchema schema = schemaBuilder.build();
+        Descriptor oldDescriptor = schema.getMessageDescriptor("OldMessage");
+        Descriptor newDescriptor = schema.getMessageDescriptor("NewMessage");
+
+        DynamicMessage message = DynamicMessage.newBuilder(newDescriptor)
+                .setField(newDescriptor.findFieldByName("id"), 7)
+                .setField(newDescriptor.findFieldByName("added_varint"), -1L)
+                .setField(newDescriptor.findFieldByName("added_double"), 1.5)
+                .setField(newDescriptor.findFieldByName("added_string"), "new")
+                .setField(newDescriptor.findFieldByName("added_float"), 2.5f)
+                .build();
+
+        // A group, which proto3 can't declare but older producers may still send.
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        message.writeTo(bytes);
+        CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+        out.writeTag(9, WireFormat.WIRETYPE_START_GROUP);
+        out.writeInt32(1, 42);
+        out.writeString(2, "in group");
+        out.writeTag(9, WireFormat.WIRETYPE_END_GROUP);
+        out.flush();
+
+        assertEquals(Map.of("id", 7), ProtoReader.read(ByteBuffer.wrap(bytes.toByteArray()), oldDescriptor));
+
+        ProtoReader failingReader = ProtoReader.builder()
+                .unknownFieldPolicy(ProtoReader.UnknownFieldPolicy.FAIL)
+                .build();
+        try {
+            failingReader.readMessage(ByteBuffer.wrap(bytes.toByteArray()), oldDescriptor);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unknown field number: 2", e.getMessage());
+        }
+
+        ProtoReader preservingReader = ProtoReader.builder()
+                .unknownFieldPolicy(ProtoReader.UnknownFieldPolicy.PRESERVE)
+                .build();
+        Map<String, Object> resultMap = preservingReader.readMessage(
+                ByteBuffer.wrap(bytes.toByteArray()), oldDescriptor);
+        assertEquals(7, resultMap.get("id"));
+        List<ByteBuffer> unknownFields = (List<ByteBuffer>) resultMap.get(ProtoReader.UNKNOWN_FIELDS_KEY);
+        assertEquals(5, unknownFields.size());
+
+        // The preserved bytes are the original fields, so they read back with the newer descriptor.
+        ByteArrayOutputStream preserved = new ByteArrayOutputStream();
+        for (ByteBuffer unknownField : unknownFields.subList(0, 4)) {
+            byte[] fieldBytes = new byte[unknownField.remaining()];
+            unknownField.get(fieldBytes);
+            preserved.write(fieldBytes);
+        }
+        Map<String, Object> newFields = ProtoReader.read(ByteBuffer.wrap(preserved.toByteArray()), newDescriptor);
+        assertEquals(Map.of("added_varint", -1L, "added_double", 1.5, "added_string", "new", "added_float", 2.5f),
+                newFields);
+    }
+
+    public void testReadProjection() throws Exception {
+        DynamicSchema.Builder schemaBuilder = DynamicSchema.newBuilder();
+        schemaBuilder.setName("ProjectionSchemaDynamic.proto");
+
+        MessageDefinition addressDef = MessageDefinition.newBuilder("Address")
+                .addField("optional", "string", "city", 1)
+                .addField("optional", "string", "zip", 2)
+                .build();
+        MessageDefinition userDef = MessageDefinition.newBuilder("User")
+                .addField("optional", "string", "name", 1)
+                .addField("optional", "Address", "address", 2)
+                .build();
+        MessageDefinition eventDef = MessageDefinition.newBuilder("Event")
+                .addField("optional", "int64", "id", 1)
+                .addField("optional", "User", "user", 2)
+                .addField("repeated", "string", "tags", 3)
+                .addField("optional", "int32", "priority", 4, "3")
+                .build();
+
+        schemaBuilder.addMessageDefinition(addressDef);
+        schemaBuilder.addMessageDefinition(userDef);
+        schemaBuilder.addMessageDefinition(eventDef);
+        DynamicSchema schema = schemaBuilder.build();
+        Descriptor addressDescriptor = schema.getMessageDescriptor("Address");
+        Descriptor userDescriptor = schema.getMessageDescriptor("User");
+        Descriptor eventDescriptor = schema.getMessageDescriptor("Event");
+
+        DynamicMessage address = DynamicMessage.newBuilder(addressDescriptor)
+                .setField(addressDescriptor.findFieldByName("city"), "Springfield")
+                .setField(addressDescriptor.findFieldByName("zip"), "12345")
+                .build();
+        DynamicMessage user = DynamicMessage.newBuilder(userDescriptor)
+                .setField(userDescriptor.findFieldByName("name"), "Homer")
+                .setField(userDescriptor.findFieldByName("address"), address)
+                .build();
+        DynamicMessage event = DynamicMessage.newBuilder(eventDescriptor)
+                .setField(eventDescriptor.findFieldByName("id"), 99L)
+                .setField(eventDescriptor.findFieldByName("user"), user)
+                .addRepeatedField(eventDescriptor.findFieldByName("tags"), "a")
+                .build();
+
+        ProtoReader reader = new ProtoReader();
+        ProtoReader.Projection projection = reader.project(eventDescriptor, List.of("id", "user.address.city"));
+        Map<String, Object> resultMap = projection.read(ByteBuffer.wrap(event.toByteArray()));
+        assertEquals(Map.of("id", 99L, "user", Map.of("address", Map.of("city", "Springfield"))), resultMap);
+
+        // A path ending at a message reads all of it; defaults are only filled in for projected fields.
+        projection = reader.project(eventDescriptor, List.of("user.address", "priority"));
+        resultMap = projection.read(ByteBuffer.wrap(event.toByteArray()));
+        assertEquals(Map.of("user", Map.of("address", Map.of("city", "Springfield", "zip", "12345")), "priority", 3),
+                resultMap);
+
+        try {
+            reader.project(eventDescriptor, List.of("user.email"));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            reader.project(eventDescriptor, List.of("id.value"));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testReadLazy() throws Exception {
+        EnumDefinition enumDefinition = EnumDefinition.newBuilder("Level")
+                .addValue("LOW", 1)
+                .addValue("HIGH", 2)
+                .build();
+
+        DynamicSchema.Builder schemaBuilder = DynamicSchema.newBuilder();
+        schemaBuilder.setName("LazySchemaDynamic.proto");
+        schemaBuilder.addEnumDefinition(enumDefinition);
+
+        MessageDefinition itemDef = MessageDefinition.newBuilder("Item")
+                .addField("optional", "string", "sku", 1)
+                .addField("optional", "int32", "quantity", 2, "1")
+                .build();
+        MessageDefinition orderDef = MessageDefinition.newBuilder("Order")
+                .addField("optional", "int64", "id", 1)
+                .addField("repeated", "Item", "items", 2)
+                .addField("repeated", "string", "tags", 3)
+                .addField("optional", "bytes", "payload", 4)
+                .addField("optional", "Level", "level", 5)
+                .addField("optional", "int32", "priority", 6, "3")
+                .build();
+
+        schemaBuilder.addMessageDefinition(itemDef);
+        schemaBuilder.addMessageDefinition(orderDef);
+        DynamicSchema schema = schemaBuilder.build();
+        Descriptor itemDescriptor = schema.getMessageDescriptor("Item");
+        Descriptor orderDescriptor = schema.getMessageDescriptor("Order");
+
+        DynamicMessage.Builder orderBuilder = DynamicMessage.newBuilder(orderDescriptor)
+                .setField(orderDescriptor.findFieldByName("id"), 12L)
+                .addRepeatedField(orderDescriptor.findFieldByName("tags"), "a")
+                .addRepeatedField(orderDescriptor.findFieldByName("tags"), "b")
+                .setField(orderDescriptor.findFieldByName("payload"), ByteString.copyFromUtf8("xyz"));
+        for (String sku : List.of("apple", "pear")) {
+            orderBuilder.addRepeatedField(orderDescriptor.findFieldByName("items"),
+                    DynamicMessage.newBuilder(itemDescriptor)
+                            .setField(itemDescriptor.findFieldByName("sku"), sku)
+                            .build());
+        }
+        byte[] bytes = orderBuilder.build().toByteArray();
+
+        ProtoReader reader = new ProtoReader();
+        ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+        Map<String, Object> lazy = reader.readLazy(byteBuffer, orderDescriptor);
+        assertFalse(byteBuffer.hasRemaining());
+
+        assertEquals(12L, lazy.get("id"));
+        assertEquals(3, lazy.get("priority"));
+        assertNull(lazy.get("level"));
+        assertFalse(lazy.containsKey("level"));
+        assertEquals(Set.of("id", "items", "tags", "payload", "priority"), lazy.keySet());
+        List<Map<String, Object>> items = (List<Map<String, Object>>) lazy.get("items");
+        assertEquals("pear", items.get(1).get("sku"));
+        assertEquals(1, items.get(1).get("quantity"));
+        assertSame(items, lazy.get("items"));
+        assertEquals(reader.readMessage(ByteBuffer.wrap(bytes), orderDescriptor), lazy);
+
+        // A bad enum number only fails when that field is read.
+        ByteArrayOutputStream withBadEnum = new ByteArrayOutputStream();
+        withBadEnum.write(bytes);
+        CodedOutputStream out = CodedOutputStream.newInstance(withBadEnum);
+        out.writeEnum(5, 9);
+        out.flush();
+        lazy = reader.readLazy(ByteBuffer.wrap(withBadEnum.toByteArray()), orderDescriptor);
+        assertEquals(List.of("a", "b"), lazy.get("tags"));
+        try {
+            lazy.get("level");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testReadMapFieldsIntoReusedMap() throws Exception {
+        DescriptorProtos.DescriptorProto countsEntry = DescriptorProtos.DescriptorProto.newBuilder()
+                .setName("CountsEntry")
+                .addField(DescriptorProtos.FieldDescriptorProto.newBuilder()
+                        .setName("key").setNumber(1)
+                        .setLabel(DescriptorProtos.FieldDescriptorProto.Label.LABEL_OPTIONAL)
+                        .setType(DescriptorProtos.FieldDescriptorProto.Type.TYPE_STRING))
+                .addField(DescriptorProtos.FieldDescriptorProto.newBuilder()
+                        .setName("value").setNumber(2)
+                        .setLabel(DescriptorProtos.FieldDescriptorProto.Label.LABEL_OPTIONAL)
+                        .setType(DescriptorProtos.FieldDescriptorProto.Type.TYPE_INT32))
+                .setOptions(DescriptorProtos.MessageOptions.newBuilder().setMapEntry(true))
+                .build();
+        DescriptorProtos.DescriptorProto counter = DescriptorProtos.DescriptorProto.newBuilder()
+                .setName("Counter")
+                .addNestedType(countsEntry)
+                .addField(DescriptorProtos.FieldDescriptorProto.newBuilder()
+                        .setName("counts").setNumber(1)
+                        .setLabel(DescriptorProtos.FieldDescriptorProto.Label.LABEL_REPEATED)
+                        .setType(DescriptorProtos.FieldDescriptorProto.Type.TYPE_MESSAGE)
+                        .setTypeName(".Counter.CountsEntry"))
+                .addField(DescriptorProtos.FieldDescriptorProto.newBuilder()
+                        .setName("ids").setNumber(2)
+                        .setLabel(DescriptorProtos.FieldDescriptorProto.Label.LABEL_REPEATED)
+                        .setType(DescriptorProtos.FieldDescriptorProto.Type.TYPE_INT32))
+                .addField(DescriptorProtos.FieldDescriptorProto.newBuilder()
+                        .setName("name").setNumber(3)
+                        .setLabel(DescriptorProtos.FieldDescriptorProto.Label.LABEL_OPTIONAL)
+                        .setType(DescriptorProtos.FieldDescriptorProto.Type.TYPE_STRING))
+                .build();
+        Descriptor descriptor = Descriptors.FileDescriptor.buildFrom(
+                DescriptorProtos.FileDescriptorProto.newBuilder()
+                        .setName("counter.proto")
+                        .setSyntax("proto3")
+                        .addMessageType(counter)
+                        .build(),
+                new Descriptors.FileDescriptor[0]).findMessageTypeByName("Counter");
+        Descriptor entryDescriptor = descriptor.findNestedTypeByName("CountsEntry");
+
+        DynamicMessage.Builder first = DynamicMessage.newBuilder(descriptor)
+                .setField(descriptor.findFieldByName("name"), "first")
+                .addRepeatedField(descriptor.findFieldByName("ids"), 1)
+                .addRepeatedField(descriptor.findFieldByName("ids"), 2);
+        for (Map.Entry<String, Integer> count : Map.of("a", 1, "b", 2).entrySet()) {
+            first.addRepeatedField(descriptor.findFieldByName("counts"), DynamicMessage.newBuilder(entryDescriptor)
+                    .setField(entryDescriptor.findFieldByName("key"), count.getKey())
+                    .setField(entryDescriptor.findFieldByName("value"), count.getValue())
+                    .build());
+        }
+        DynamicMessage second = DynamicMessage.newBuilder(descriptor)
+                .addRepeatedField(descriptor.findFieldByName("ids"), 3)
+                .build();
+
+        ProtoReader reader = new ProtoReader();
+        Map<String, Object> reuse = new HashMap<>();
+        Map<String, Object> resultMap = reader.readMessage(
+                ByteBuffer.wrap(first.build().toByteArray()), descriptor, reuse);
+        assertSame(reuse, resultMap);
+        assertEquals(Map.of("a", 1, "b", 2), resultMap.get("counts"));
+        assertEquals(List.of(1, 2), resultMap.get("ids"));
+        assertEquals("first", resultMap.get("name"));
+        Object ids = resultMap.get("ids");
+
+        // Fields missing from the second message are gone, and the ids list is refilled in place.
+        resultMap = reader.readMessage(ByteBuffer.wrap(second.toByteArray()), descriptor, reuse);
+        assertEquals(Map.of("ids", List.of(3)), resultMap);
+        assertSame(ids, resultMap.get("ids"));
+
+        // Strings in direct buffers decode through the scratch array.
+        byte[] bytes = first.build().toByteArray();
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(bytes.length);
+        directBuffer.put(bytes).flip();
+        assertEquals(reader.readMessage(ByteBuffer.wrap(bytes), descriptor),
+                reader.readMessage(directBuffer, descriptor));
+    }
+
+    public void testReadEmptyFieldsIntoReusedMap() throws Exception {
+        DynamicSchema.Builder schemaBuilder = DynamicSchema.newBuilder();
+        schemaBuilder.setName("ReuseSchemaDynamic.proto");
+
+        MessageDefinition innerDef = MessageDefinition.newBuilder("Inner")
+                .addField("optional", "int32", "value", 1)
+                .build();
+        MessageDefinition outerDef = MessageDefinition.newBuilder("Outer")
+                .addField("optional", "Inner", "inner", 1)
+                .addField("repeated", "int32", "nums", 2)
+                .build();
+
+        schemaBuilder.addMessageDefinition(innerDef);
+        schemaBuilder.addMessageDefinition(outerDef);
+        Descriptor descriptor = schemaBuilder.build().getMessageDescriptor("Outer");
+
+        // An empty sub-message and an empty packed run are present fields, not missing ones.
+        byte[] emptyFields = {0x0A, 0x00, 0x12, 0x00};
+        byte[] nums = {0x10, 0x01, 0x10, 0x02};
+
+        ProtoReader reader = new ProtoReader();
+        Map<String, Object> fresh = reader.readMessage(ByteBuffer.wrap(emptyFields), descriptor);
+        assertEquals(Map.of("inner", Map.of(), "nums", List.of()), fresh);
+        assertEquals(fresh, reader.readMessage(ByteBuffer.wrap(emptyFields), descriptor, new HashMap<>()));
+
+        Map<String, Object> reuse = reader.readMessage(ByteBuffer.wrap(nums), descriptor, new HashMap<>());
+        Object numsList = reuse.get("nums");
+        assertEquals(fresh, reader.readMessage(ByteBuffer.wrap(emptyFields), descriptor, reuse));
+        assertSame(numsList, reuse.get("nums"));
+
+        assertEquals(Map.of(), reader.readMessage(ByteBuffer.allocate(0), descriptor, reuse));
+    }
+
+    public void testPrimitiveLists() {
+        PrimitiveList.IntList ints = new PrimitiveList.IntList(1);
+        ints.addInt(1);
+        ints.add(3);
+        ints.add(1, 2);
+        assertEquals(List.of(1, 2, 3), ints);
+        assertEquals(Integer.valueOf(2), ints.remove(1));
+        assertEquals(Integer.valueOf(3), ints.set(1, 4));
+        assertEquals(List.of(1, 4), ints);
+        try {
+            ints.getInt(2);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    private static int indexOf(byte[] array, byte[] target) {
+        for (int i = 0; i + target.length <= array.length; i++) {
+            if (Arrays.equals(array, i, i + target.length, target, 0, target.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
 }
@@ -197,6 +197,46 @@ public class ProtoWrapperTest extends TestCase {
         assertEquals(456, repeatedResult.get(1).get("testRepeatedInt"));
     }
 
+    public void testMemoizedWrap() throws Exception {
+        MessageDefinition repeatedMsgDef = MessageDefinition.newBuilder("Repeated")
+                .addField("optional", "int32", "testRepeatedInt", 1)
+                .build();
+
+        MessageDefinition msgDef = MessageDefinition.newBuilder("Test")
+                .addField("repeated", "Repeated", "testRepeated", 1)
+                .addField("optional", "Repeated", "testNested", 2)
+                .build();
+
+        DynamicSchema schema = DynamicSchema.newBuilder()
+                .addMessageDefinition(repeatedMsgDef)
+                .addMessageDefinition(msgDef)
+                .build();
+
+        Descriptors.Descriptor descriptor = schema.getMessageDescriptor("Test");
+        Descriptors.Descriptor repeatedDescriptor = schema.getMessageDescriptor("Repeated");
+
+        DynamicMessage repeatedMessage = DynamicMessage.newBuilder(repeatedDescriptor)
+                .setField(repeatedDescriptor.findFieldByName("testRepeatedInt"), 123)
+                .build();
+
+        DynamicMessage message = DynamicMessage.newBuilder(descriptor)
+                .addRepeatedField(descriptor.findFieldByName("testRepeated"), repeatedMessage)
+                .setField(descriptor.findFieldByName("testNested"), repeatedMessage)
+                .build();
+
+        Map<String, Object> result = new ProtoWrapper(true).wrap(message);
+        List<Map<String, Object>> repeatedResult = (List<Map<String, Object>>) result.get("testRepeated");
+
+        assertSame(repeatedResult, result.get("testRepeated"));
+        assertSame(repeatedResult.get(0), repeatedResult.get(0));
+        assertSame(result.get("testNested"), result.get("testNested"));
+        assertEquals(123, repeatedResult.get(0).get("testRepeatedInt"));
+
+        Map<String, Object> unmemoized = wrapper.wrap(message);
+        assertNotSame(unmemoized.get("testNested"), unmemoized.get("testNested"));
+        assertEquals(unmemoized, result);
+    }
+
     public void testOneOfFieldHandling() throws Exception {
         // Define a protobuf message type with a 'oneof' field using the dynamic schema library.
         MessageDefinition msgDef = MessageDefinition.newBuilder("MyMessage")